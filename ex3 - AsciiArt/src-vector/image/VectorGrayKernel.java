@@ -0,0 +1,103 @@
+package image;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The GrayKernel of the incubating Vector API (jdk.incubator.vector), running every loop many lanes at a
+ * time in the preferred vector shape of the CPU, & the remainder of every row one element at a time. It is
+ * compiled separately from the rest of the project (from the src-vector source root, with
+ * "--add-modules jdk.incubator.vector") & loaded reflectively by ImageManipulator, which falls back to
+ * ScalarGrayKernel when this class or the module is missing.
+ */
+class VectorGrayKernel implements GrayKernel {
+
+    /**
+     * The species of the int vectors, of the preferred shape of the CPU.
+     */
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * The species of the long vectors, of the preferred shape of the CPU.
+     */
+    private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+
+    /**
+     * The number of fixed-point grayscale values whose sum surely fits in an int (2^31 divided by the
+     * largest value, GRAY_SCALE * MAX_GRAYSCALE_INTENSITY), so the lanes of an int vector are summed across
+     * at most this many values before their sum is widened to a long.
+     */
+    private static final int INT_SUM_VALUES = Integer.MAX_VALUE /
+            (ImageManipulator.GRAY_SCALE * ImageManipulator.MAX_GRAYSCALE_INTENSITY);
+
+    /**
+     * The number of int vectors summed lane by lane before their sum is widened to a long.
+     */
+    private static final int SUM_BLOCK_VECTORS = Math.max(1, INT_SUM_VALUES / INTS.length());
+
+    @Override
+    public void toGray(int[] rgbRow, int[] grayRow, int length) {
+        int bound = INTS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += INTS.length()) {
+            IntVector rgb = IntVector.fromArray(INTS, rgbRow, i);
+            rgb.lanewise(VectorOperators.LSHR, ImageManipulator.RED_SHIFT)
+                    .and(ImageManipulator.CHANNEL_MASK).mul(ImageManipulator.FIXED_COEFFICIENT_RED)
+                    .add(rgb.lanewise(VectorOperators.LSHR, ImageManipulator.GREEN_SHIFT)
+                            .and(ImageManipulator.CHANNEL_MASK).mul(ImageManipulator.FIXED_COEFFICIENT_GREEN))
+                    .add(rgb.and(ImageManipulator.CHANNEL_MASK).mul(ImageManipulator.FIXED_COEFFICIENT_BLUE))
+                    .intoArray(grayRow, i);
+        }
+        for (; i < length; i++) {
+            grayRow[i] = ImageManipulator.RGB2GrayFixed(rgbRow[i]);
+        }
+    }
+
+    @Override
+    public long sum(int[] grayRow, int from, int to) {
+        int bound = from + INTS.loopBound(to - from);
+        int i = from;
+        long sum = 0;
+        while (i < bound) {
+            int blockEnd = Math.min(bound, i + SUM_BLOCK_VECTORS * INTS.length());
+            IntVector blockSum = IntVector.zero(INTS);
+            for (; i < blockEnd; i += INTS.length()) {
+                blockSum = blockSum.add(IntVector.fromArray(INTS, grayRow, i));
+            }
+            sum += blockSum.reduceLanesToLong(VectorOperators.ADD);
+        }
+        for (; i < to; i++) {
+            sum += grayRow[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addRow(int[] target, int[] source, int length) {
+        int bound = INTS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += INTS.length()) {
+            IntVector.fromArray(INTS, target, i).add(IntVector.fromArray(INTS, source, i))
+                    .intoArray(target, i);
+        }
+        for (; i < length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+    @Override
+    public void addRow(long[] table, int targetOffset, int sourceOffset, int length) {
+        int bound = LONGS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += LONGS.length()) {
+            LongVector.fromArray(LONGS, table, targetOffset + i)
+                    .add(LongVector.fromArray(LONGS, table, sourceOffset + i))
+                    .intoArray(table, targetOffset + i);
+        }
+        for (; i < length; i++) {
+            table[targetOffset + i] += table[sourceOffset + i];
+        }
+    }
+}
@@ -1,9 +1,21 @@
 package ascii_art;
 
+import image.BrightnessSource;
+import image.EdgePolicy;
 import image.Image;
 import image.ImageManipulator;
+import image.IntegralImage;
+import image.TileGrid;
+import image_char_matching.GlyphBrightnessRegistry;
 import image_char_matching.SubImgCharMatcher;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 /**
  * Represents the core algorithm for generating ASCII art from an image. This class takes an image,
  * applies a specified resolution, and utilizes a SubImgCharMatcher to map parts of the image to characters
@@ -11,9 +23,27 @@ import image_char_matching.SubImgCharMatcher;
  */
 public class AsciiArtAlgorithm {
 
-    private Image image;
+    private static final String ERROR_MESSAGE_INTERRUPTED = "Interrupted while converting the image.";
+
+    /**
+     * The number of row bands each worker gets, so a worker that finishes early can take another band
+     * instead of waiting for the slowest one.
+     */
+    private static final int BANDS_PER_WORKER = 4;
+
+    /**
+     * The minimal difference between the brightest & the darkest cells of a tile for its shape to be
+     * matched; tiles of lower contrast (e.g. flat areas with some noise) are left with an empty mask, so
+     * they are matched by brightness only.
+     */
+    private static final double MIN_SHAPE_CONTRAST = 0.2;
+
+    private BrightnessSource brightnessSource;
     private int resolution;
     private SubImgCharMatcher subImgCharMatcher;
+    private EdgePolicy edgePolicy;
+    private ExecutorService executor;
+    private int workers;
 
     /**
      * Constructs an instance of the AsciiArtAlgorithm with a specified image, resolution, and a
@@ -28,33 +58,190 @@ public class AsciiArtAlgorithm {
      *                      characters.
      */
     public AsciiArtAlgorithm(Image image, int resolution, SubImgCharMatcher subImgCharMatcher) {
-        this.image = image;
+        this(new IntegralImage(ImageManipulator.padImage(image)), resolution, subImgCharMatcher);
+    }
+
+    /**
+     * Constructs an instance of the AsciiArtAlgorithm over the brightness source (e.g. a summed-area table or
+     * a brightness pyramid) of an already padded image. Since the source can be reused as long as the image
+     * doesn't change, this constructor allows running the algorithm several times without scanning the
+     * pixels of the image again.
+     *
+     * @param brightnessSource  The brightness source of the padded image to be converted into ASCII art.
+     * @param resolution        The resolution to be used for the ASCII art.
+     * @param subImgCharMatcher The SubImgCharMatcher instance responsible for matching image brightness
+     *                          levels to characters.
+     */
+    public AsciiArtAlgorithm(BrightnessSource brightnessSource, int resolution,
+                             SubImgCharMatcher subImgCharMatcher) {
+        this(brightnessSource, resolution, subImgCharMatcher, null, 1);
+    }
+
+    /**
+     * Constructs an instance of the AsciiArtAlgorithm which splits the output grid into row bands & converts
+     * them concurrently on the given executor. The result is identical to the sequential conversion.
+     *
+     * @param brightnessSource  The brightness source of the padded image to be converted into ASCII art.
+     * @param resolution        The resolution to be used for the ASCII art.
+     * @param subImgCharMatcher The SubImgCharMatcher instance responsible for matching image brightness
+     *                          levels to characters.
+     * @param executor          The executor running the row bands, or null for a sequential conversion.
+     * @param workers           The number of workers of the executor, used to decide how many bands to
+     *                          create. A value of 1 converts the image sequentially on the calling thread.
+     */
+    public AsciiArtAlgorithm(BrightnessSource brightnessSource, int resolution,
+                             SubImgCharMatcher subImgCharMatcher, ExecutorService executor, int workers) {
+        this(brightnessSource, resolution, subImgCharMatcher, null, executor, workers);
+    }
+
+    /**
+     * Constructs an instance of the AsciiArtAlgorithm over the brightness source of an image which isn't
+     * padded, tiling it by the given edge policy, so any resolution up to the width of the image is valid.
+     * The source must answer the brightness of rectangular segments (e.g. a summed-area table).
+     *
+     * @param brightnessSource  The brightness source of the image to be converted into ASCII art.
+     * @param resolution        The resolution to be used for the ASCII art.
+     * @param subImgCharMatcher The SubImgCharMatcher instance responsible for matching image brightness
+     *                          levels to characters.
+     * @param edgePolicy        The policy of the tiles along the edges of the image, or null for square
+     *                          tiles over an already padded image.
+     * @param executor          The executor running the row bands, or null for a sequential conversion.
+     * @param workers           The number of workers of the executor.
+     */
+    public AsciiArtAlgorithm(BrightnessSource brightnessSource, int resolution,
+                             SubImgCharMatcher subImgCharMatcher, EdgePolicy edgePolicy,
+                             ExecutorService executor, int workers) {
+        this.brightnessSource = brightnessSource;
         this.resolution = resolution;
         this.subImgCharMatcher = subImgCharMatcher;
+        this.edgePolicy = edgePolicy;
+        this.executor = executor;
+        this.workers = workers;
     }
 
     /**
-     * Executes the algorithm to convert the specified image into ASCII art. The process involves padding the
-     * image,
-     * splitting it according to the specified resolution, and then converting each segment into a character
-     * that
-     * represents its average brightness. The SubImgCharMatcher is used to find the best matching character
-     * for
-     * each segment.
+     * Executes the algorithm to convert the specified image into ASCII art. The padded image is divided into
+     * square segments according to the specified resolution (or, with an edge policy, the image is tiled by
+     * the policy), and each segment is converted into a character that represents its average brightness. The
+     * brightness of every segment is answered in O(1) by the brightness source, so no segment is copied. The
+     * SubImgCharMatcher is used to find the best matching character for each segment. When an executor with
+     * more than one worker was given, bands of rows are converted concurrently.
      *
      * @return A 2D character array representing the ASCII art generated from the image.
+     * @throws IllegalArgumentException If the resolution is not valid for the given image.
+     * @throws IllegalStateException    If the calling thread was interrupted during a parallel conversion.
      */
-    public char[][] run() {
-        Image paddedImage = ImageManipulator.padImage(image);
-        Image[][] splittedImage = ImageManipulator.splitImage(paddedImage, resolution);
-        char[][] art = new char[splittedImage.length][splittedImage[0].length];
+    public char[][] run() throws IllegalArgumentException {
+        int width = brightnessSource.getWidth();
+        int height = brightnessSource.getHeight();
+        TileGrid grid = edgePolicy == null ? new TileGrid(width, height, resolution) :
+                new TileGrid(width, height, resolution, edgePolicy);
+        char[][] art = new char[grid.getRows()][grid.getColumns()];
 
-        for (int row = 0; row < splittedImage.length; row++) {
-            for (int col = 0; col < splittedImage[row].length; col++) {
-                double subImageBrightness = ImageManipulator.getImageBrightness(splittedImage[row][col]);
-                art[row][col] = subImgCharMatcher.getCharByImageBrightness(subImageBrightness);
-            }
+        if (executor == null || workers <= 1) {
+            convertRows(art, grid, 0, art.length);
+        } else {
+            convertRowsInParallel(art, grid);
         }
         return art;
     }
+
+    /**
+     * Splits the rows of the output grid into bands & converts every band as a separate task of the
+     * executor, waiting until all of them are done. Since every band writes only its own rows, the tasks
+     * don't need any synchronization between them.
+     *
+     * @param art  The output grid to fill.
+     * @param grid The tiles of the image.
+     */
+    private void convertRowsInParallel(char[][] art, TileGrid grid) {
+        int bands = Math.min(art.length, workers * BANDS_PER_WORKER);
+        List<Future<?>> futures = new ArrayList<>(bands);
+        for (int band = 0; band < bands; band++) {
+            int firstRow = band * art.length / bands;
+            int lastRow = (band + 1) * art.length / bands;
+            futures.add(executor.submit(() -> convertRows(art, grid, firstRow, lastRow)));
+        }
+
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ERROR_MESSAGE_INTERRUPTED, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Converts a band of rows of the output grid into characters. When the matcher is in shape matching
+     * mode, the binary mask of every tile is built too, & the tiles are matched by their shape.
+     *
+     * @param art      The output grid to fill.
+     * @param grid     The tiles of the image.
+     * @param firstRow The first row of the band, inclusive.
+     * @param lastRow  The last row of the band, exclusive.
+     */
+    private void convertRows(char[][] art, TileGrid grid, int firstRow, int lastRow) {
+        // a single mask is reused by all the tiles of the band.
+        long[] tileMask = subImgCharMatcher.isShapeMatching() ?
+                new long[GlyphBrightnessRegistry.MASK_WORDS] : null;
+        for (int row = firstRow; row < lastRow; row++) {
+            for (int col = 0; col < art[row].length; col++) {
+                double subImageBrightness = brightnessSource.getAverageBrightness(grid.getTop(row),
+                        grid.getLeft(col), grid.getTileHeight(row), grid.getTileWidth(col));
+                if (tileMask != null) {
+                    buildTileMask(grid.getTop(row), grid.getLeft(col), grid.getTileHeight(row),
+                            grid.getTileWidth(col), subImageBrightness, tileMask);
+                    art[row][col] = subImgCharMatcher.getCharByImageShape(subImageBrightness, tileMask);
+                } else {
+                    art[row][col] = subImgCharMatcher.getCharByImageBrightness(subImageBrightness);
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the binary mask of a tile: the tile is divided into MASK_EDGE x MASK_EDGE cells (a cell is a
+     * single pixel when the tile is smaller than the mask), & the bit of every cell brighter than the whole
+     * tile is set. The mask of a tile whose contrast is below MIN_SHAPE_CONTRAST is left empty.
+     *
+     * @param top            The top row of the tile.
+     * @param left           The left column of the tile.
+     * @param tileHeight     The height of the tile in pixels.
+     * @param tileWidth      The width of the tile in pixels.
+     * @param tileBrightness The brightness of the whole tile.
+     * @param mask           The array to store the packed mask in.
+     */
+    private void buildTileMask(int top, int left, int tileHeight, int tileWidth, double tileBrightness,
+                               long[] mask) {
+        Arrays.fill(mask, 0);
+        double darkest = tileBrightness;
+        double brightest = tileBrightness;
+        for (int row = 0; row < GlyphBrightnessRegistry.MASK_EDGE; row++) {
+            int cellTop = top + row * tileHeight / GlyphBrightnessRegistry.MASK_EDGE;
+            int cellHeight = Math.max(1, top + (row + 1) * tileHeight / GlyphBrightnessRegistry.MASK_EDGE -
+                    cellTop);
+            for (int col = 0; col < GlyphBrightnessRegistry.MASK_EDGE; col++) {
+                int cellLeft = left + col * tileWidth / GlyphBrightnessRegistry.MASK_EDGE;
+                int cellWidth = Math.max(1, left + (col + 1) * tileWidth / GlyphBrightnessRegistry.MASK_EDGE -
+                        cellLeft);
+                double cellBrightness = brightnessSource.getAverageBrightness(cellTop, cellLeft, cellHeight,
+                        cellWidth);
+                if (cellBrightness > tileBrightness) {
+                    GlyphBrightnessRegistry.setMaskBit(mask, row, col);
+                }
+                darkest = Math.min(darkest, cellBrightness);
+                brightest = Math.max(brightest, cellBrightness);
+            }
+        }
+        if (brightest - darkest < MIN_SHAPE_CONTRAST) {
+            Arrays.fill(mask, 0);
+        }
+    }
 }
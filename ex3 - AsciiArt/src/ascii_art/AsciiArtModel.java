@@ -3,11 +3,25 @@ package ascii_art;
 import ascii_output.AsciiOutput;
 import factories.AsciiOutputFactory;
 import exceptions.ModelException;
+import image.BrightnessPyramid;
+import image.BrightnessSource;
+import image.EdgePolicy;
 import image.Image;
+import image.ImageDecoder;
 import image.ImageManipulator;
+import image.IntegralImage;
 import image_char_matching.SubImgCharMatcher;
 
+import java.awt.Dimension;
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 /**
  * Implements the Model interface to provide functionality for ASCII art generation.
@@ -57,6 +71,26 @@ public class AsciiArtModel implements Model {
      */
     private static final String ALL = "all";
 
+    /**
+     * The prefix of a character given by its code point, e.g. U+2800.
+     */
+    private static final String CODE_POINT_PREFIX = "U+";
+
+    /**
+     * The radix of a code point given in the U+XXXX notation.
+     */
+    private static final int HEX_RADIX = 16;
+
+    /**
+     * The number of bounds of a range of characters.
+     */
+    private static final int RANGE_BOUNDS = 2;
+
+    /**
+     * The value returned by parseChar for a string which isn't a single valid character.
+     */
+    private static final int INVALID_CHAR = -1;
+
     /**
      * The keyword for console output method.
      */
@@ -67,6 +101,11 @@ public class AsciiArtModel implements Model {
      */
     private static final String HTML = "html";
 
+    /**
+     * The keyword for the ANSI console output method, which prints only the changes between frames.
+     */
+    private static final String ANSI = "ansi";
+
     /**
      * The command argument to increase resolution.
      */
@@ -125,11 +164,75 @@ public class AsciiArtModel implements Model {
     private static final String ERROR_MESSAGE_INVALID_BOUNDARIES_RESOLUTION = "Did not change resolution " +
             "due to exceeding boundaries.";
 
+    /**
+     * Error message displayed when an attempt to change the number of workers fails due to incorrect format.
+     */
+    private static final String ERROR_MESSAGE_INCORRECT_WORKERS = "Did not change workers due to " +
+            "incorrect format.";
+
+    /**
+     * The default number of workers, converting the image sequentially on the calling thread.
+     */
+    private static final int DEFAULT_WORKERS = 1;
+
+    /**
+     * The maximal number of conversion results kept in the result cache.
+     */
+    private static final int RESULT_CACHE_CAPACITY = 16;
+
+    /**
+     * Error message displayed when the edge policy can't be changed since the current resolution isn't valid
+     * for the image tiled by the new policy.
+     */
+    private static final String ERROR_MESSAGE_EDGE_POLICY_RESOLUTION = "Did not change edge policy since " +
+            "the current resolution exceeds its boundaries.";
+
+    /**
+     * Error message displayed when an image file is too large to be loaded in a mode which can't stream it
+     * (with an edge policy, or decoded at a reduced level of detail).
+     */
+    private static final String ERROR_MESSAGE_IMAGE_TOO_LARGE = "Did not load the image since it is too " +
+            "large for the memory in this mode.";
+
+    /**
+     * Error message displayed when the ASCII art algorithm rejects the current settings.
+     */
+    private static final String ERROR_MESSAGE_EXECUTE = "Did not execute due to invalid resolution.";
+
+    /**
+     * The minimal number of decoded pixels along the edge of every segment when images are decoded at a
+     * reduced level of detail, so the average brightness of a segment is still taken over enough samples.
+     */
+    private static final int MIN_PIXELS_PER_SEGMENT_EDGE = 8;
+
+    /**
+     * The estimated number of bytes of memory a pixel of a loaded image costs: the decoded image, its
+     * packed pixels, the padding & the brightness source. Images whose pixels would cost more than the heap
+     * are streamed from their files instead (see setStreamingThreshold).
+     */
+    private static final int BYTES_PER_LOADED_PIXEL = 16;
+
+    /**
+     * The subsampling factor decoding an image at full resolution.
+     */
+    private static final int FULL_RESOLUTION = 1;
+
     /**
      * Error message displated when trying to invoke the asciiArt algorithm with an empty charset.
      */
     private static final String ERROR_MESSAGE_EMPTY_CHARSET = "Did not execute. Charset is empty.";
 
+    /**
+     * Error message displayed when the directory or file list of a batch can't be read.
+     */
+    private static final String ERROR_MESSAGE_BATCH = "Did not execute batch due to problem with directory " +
+            "or file list.";
+
+    /**
+     * The extension appended to the path of every image file of a batch to name its HTML output file.
+     */
+    private static final String HTML_EXTENSION = ".html";
+
     /**
      * The SubImgCharMatcher instance used for matching sub-images to characters.
      */
@@ -145,11 +248,96 @@ public class AsciiArtModel implements Model {
      */
     private Image image;
 
+    /**
+     * The generation of the current image, incremented whenever a new image is loaded, which identifies the
+     * image in the result cache without keeping it alive.
+     */
+    private long imageGeneration;
+
+    /**
+     * The path of the current image file.
+     */
+    private String imagePath;
+
+    /**
+     * Whether image files are decoded at the reduced level of detail the current resolution needs, rather
+     * than at full resolution.
+     */
+    private boolean subsampledDecoding;
+
+    /**
+     * The subsampling factor the current image was decoded with (1 for full resolution).
+     */
+    private int subsampling;
+
+    /**
+     * The width in pixels of the current image file at full resolution, known only when subsampled decoding
+     * is on.
+     */
+    private int fullImageWidth;
+
+    /**
+     * The dimensions of the current image file when it is too large to be loaded & is streamed from the file
+     * by every execution instead (in which case image & brightnessSource are null), null otherwise.
+     */
+    private Dimension streamedSize;
+
+    /**
+     * The number of pixels above which image files are streamed rather than loaded, when images are padded &
+     * decoded at full resolution.
+     */
+    private long streamingThreshold;
+
+    /**
+     * The policy of the tiles along the edges of images which aren't padded, or null if images are padded
+     * to powers of two.
+     */
+    private EdgePolicy edgePolicy;
+
+    /**
+     * Whether the brightness of segments is averaged in linear light (& encoded back to sRGB once per
+     * segment), rather than averaging the gamma-encoded values of the pixels.
+     */
+    private boolean linearLight;
+
+    /**
+     * The brightness source of the current image, built once per loaded image & reused by every execution:
+     * a brightness pyramid of the padded image, so changing the resolution only reads the matching level of
+     * it, or a summed-area table of the image when it isn't padded.
+     */
+    private BrightnessSource brightnessSource;
+
     /**
      * The factory used to create AsciiOutput instances based on the specified output method.
      */
     private AsciiOutputFactory factory;
 
+    /**
+     * The name of the current output method, used to choose the outputs of a batch.
+     */
+    private String outputName;
+
+    /**
+     * Whether batches are converted by a pipeline of stages rather than image by image on the workers.
+     */
+    private boolean pipelinedBatch;
+
+    /**
+     * The number of workers used for converting the image into ASCII art.
+     */
+    private int workers;
+
+    /**
+     * The pool running the conversion when more than one worker is used, null otherwise.
+     */
+    private ForkJoinPool pool;
+
+    /**
+     * The cache of the recent conversion results, so repeating a conversion with the same image,
+     * resolution & character set doesn't run the algorithm again.
+     */
+    private final ConversionCache resultCache;
+
     /**
      * Constructs an AsciiArtModel with a specified character set for ASCII art generation.
      * Initializes the model with default resolution and image file.
@@ -160,8 +348,17 @@ public class AsciiArtModel implements Model {
     public AsciiArtModel(char[] charset) throws IOException {
         this.subImgCharMatcher = new SubImgCharMatcher(charset);
         resolution = DEFAULT_RESOLUTION;
-        image = loadImage(DEFAULT_FILE_NAME);
+        streamingThreshold = Runtime.getRuntime().maxMemory() / BYTES_PER_LOADED_PIXEL;
+        try {
+            setImage(DEFAULT_FILE_NAME);
+        } catch (ModelException e) {
+            // the default mode streams every image which is too large, so this can't happen.
+            throw new IOException(e.getMessage(), e);
+        }
         factory = new AsciiOutputFactory();
+        outputName = CONSOLE;
+        workers = DEFAULT_WORKERS;
+        resultCache = new ConversionCache(RESULT_CACHE_CAPACITY);
     }
 
     /**
@@ -240,53 +437,281 @@ public class AsciiArtModel implements Model {
     /**
      * Sets the resolution for ASCII art generation based on a specified string argument.
      *
-     * @param args The argument specifying how to adjust the resolution (e.g., "up", "down").
+     * @param args The argument specifying how to adjust the resolution ("up", "down"), or the new resolution
+     *             as a number.
      * @return The new resolution value.
      * @throws ModelException If the specified argument is invalid or the resolution adjustment is not
      * possible.
      */
     @Override
     public int setResolution(String args) throws ModelException {
-        double coefficient = 0;
+        int newResolution;
         switch (args) {
             case UP:
-                coefficient = COEFFICIENT_UP;
+                newResolution = resolution * COEFFICIENT_UP;
                 break;
             case DOWN:
-                coefficient = COEFFICIENT_DOWN;
+                newResolution = (int) (resolution * COEFFICIENT_DOWN);
                 break;
             default:
-                throw new ModelException(ERROR_MESSAGE_INCORRECT_RESOLUTION);
+                newResolution = parseResolution(args);
+                break;
+        }
+        if (newResolution < 1) {
+            throw new ModelException(ERROR_MESSAGE_INVALID_BOUNDARIES_RESOLUTION);
+        }
+
+        Image newImage = image;
+        int newSubsampling = subsampling;
+        if (subsampledDecoding && chooseSubsampling(fullImageWidth, newResolution) < subsampling) {
+            // the current image is too coarse for the new resolution, decode the file with more detail.
+            newSubsampling = chooseSubsampling(fullImageWidth, newResolution);
+            try {
+                if (loadedPixels(ImageDecoder.readSize(imagePath), newSubsampling) > streamingThreshold) {
+                    throw new ModelException(ERROR_MESSAGE_IMAGE_TOO_LARGE);
+                }
+                newImage = loadImage(imagePath, newSubsampling);
+            } catch (IOException e) {
+                throw new ModelException(ERROR_MESSAGE_IMAGE_FILE);
+            }
         }
 
-        // set resolution is pow of 2, therefore resolution divisible by 2.
-        if (!ImageManipulator.isValidResolution(image, (int) (resolution * coefficient))) {
+        if (!isValidResolution(newImage, newResolution)) {
             throw new ModelException(ERROR_MESSAGE_INVALID_BOUNDARIES_RESOLUTION);
         }
 
-        resolution *= coefficient;
+        if (newImage != image) {
+            // only a loaded image is reloaded with more detail, so the new image isn't streamed.
+            image = newImage;
+            imageGeneration++;
+            brightnessSource = buildBrightnessSource(image);
+            subsampling = newSubsampling;
+        }
+        resolution = newResolution;
         return resolution;
     }
 
+    /**
+     * Sets the number of workers used for converting the image into ASCII art, based on a specified string
+     * argument.
+     *
+     * @param args The number of workers as a string.
+     * @return The new number of workers.
+     * @throws ModelException If the specified argument is not a positive number.
+     */
+    @Override
+    public int setWorkers(String args) throws ModelException {
+        try {
+            setWorkers(Integer.parseInt(args.split(SPACE_DELIMITER)[0]));
+        } catch (IllegalArgumentException e) {
+            throw new ModelException(ERROR_MESSAGE_INCORRECT_WORKERS);
+        }
+        return workers;
+    }
+
+    /**
+     * Sets the number of workers used for converting the image into ASCII art. With more than one worker,
+     * bands of rows are converted concurrently on a dedicated ForkJoin pool.
+     *
+     * @param workers The new number of workers.
+     * @throws IllegalArgumentException If the number of workers isn't positive.
+     */
+    public void setWorkers(int workers) throws IllegalArgumentException {
+        if (workers < 1) {
+            throw new IllegalArgumentException(ERROR_MESSAGE_INCORRECT_WORKERS);
+        }
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        if (workers > 1) {
+            pool = new ForkJoinPool(workers);
+        }
+        this.workers = workers;
+    }
+
+    /**
+     * Turns the pipelined batch conversion on or off. When on, a batch is converted by a ConversionPipeline,
+     * which decodes, builds the brightness of, matches & writes the images on separate threads connected by
+     * bounded queues, & reports the metrics of every stage; when off, whole images are converted
+     * concurrently by the workers.
+     *
+     * @param pipelinedBatch Whether to convert batches by a pipeline of stages.
+     */
+    public void setPipelinedBatch(boolean pipelinedBatch) {
+        this.pipelinedBatch = pipelinedBatch;
+    }
+
+    /**
+     * Turns the quantized matching mode of the character matcher on or off. In quantized mode every
+     * brightness level is matched by a single lookup table read, at a bounded loss of accuracy (see
+     * SubImgCharMatcher.QUANTIZATION_LEVELS).
+     *
+     * @param quantized Whether to use the quantized matching mode.
+     */
+    public void setQuantizedMatching(boolean quantized) {
+        if (subImgCharMatcher.isQuantized() != quantized) {
+            subImgCharMatcher.setQuantized(quantized);
+            resultCache.clear();
+        }
+    }
+
     /**
      * Sets the image file to be used for ASCII art generation to the specified path.
      *
      * @param args The path to the image file.
-     * @throws ModelException If the file cannot be found or read.
+     * @throws ModelException If the file cannot be found or read, or is too large to be loaded in the current
+     *                        mode (see setStreamingThreshold); the current image isn't changed then.
      */
     @Override
     public void setImageFile(String args) throws ModelException {
         try {
-            image = loadImage(parseArgsAsPath(args));
+            setImage(parseArgsAsPath(args));
+        } catch (IOException e) {
+            throw new ModelException(ERROR_MESSAGE_IMAGE_FILE);
+        }
+    }
+
+    /**
+     * Turns the subsampled decoding of image files on or off, reloading the current image file accordingly.
+     * When on, image files are decoded reading only every n-th pixel of every n-th row, with n chosen from
+     * the resolution so every segment still has enough pixels. Increasing the resolution decodes the file
+     * again with more detail only when the current level of detail isn't enough.
+     *
+     * @param enabled Whether to decode image files at a reduced level of detail.
+     * @throws ModelException If the current image file cannot be read again, or is too large to be loaded
+     *                        in the new mode, in which case the mode isn't changed.
+     */
+    public void setSubsampledDecoding(boolean enabled) throws ModelException {
+        if (subsampledDecoding == enabled) {
+            return;
+        }
+        subsampledDecoding = enabled;
+        try {
+            setImage(imagePath);
+        } catch (IOException e) {
+            subsampledDecoding = !enabled;
+            throw new ModelException(ERROR_MESSAGE_IMAGE_FILE);
+        } catch (ModelException e) {
+            subsampledDecoding = !enabled;
+            throw e;
+        }
+    }
+
+    /**
+     * Turns the shape matching mode of the character matcher on or off. In shape matching mode every tile
+     * is matched to the character (of about the same brightness) whose glyph has the closest shape, which
+     * keeps much more of the edges of the image.
+     *
+     * @param shapeMatching Whether to match tiles by their shape.
+     */
+    public void setShapeMatching(boolean shapeMatching) {
+        if (subImgCharMatcher.isShapeMatching() != shapeMatching) {
+            subImgCharMatcher.setShapeMatching(shapeMatching);
+            resultCache.clear();
+        }
+    }
+
+    /**
+     * Turns the linear-light brightness mode on or off. In linear-light mode the pixels are converted from
+     * sRGB to linear light (through precomputed tables) before the brightness of every segment is averaged,
+     * so midtones aren't darkened by averaging gamma-encoded values. The brightness source of the current
+     * image is rebuilt, & the cached results are dropped.
+     *
+     * @param linearLight Whether to average the brightness of segments in linear light.
+     */
+    public void setLinearLight(boolean linearLight) {
+        if (this.linearLight == linearLight) {
+            return;
+        }
+        this.linearLight = linearLight;
+        if (streamedSize == null) {
+            brightnessSource = buildBrightnessSource(image);
+        }
+        resultCache.clear();
+    }
+
+    /**
+     * Sets the number of pixels above which image files are streamed rather than loaded, reloading the
+     * current image file accordingly. A streamed image is never held in memory: every execution reads the
+     * file again one row of segments at a time (see StreamingAsciiArtAlgorithm), matching the segments by
+     * their brightness only. The threshold applies to the pixels of the image as it would be loaded: padded
+     * to powers of two unless an edge policy is set, & subsampled when decoded at a reduced level of detail.
+     * Images are streamed only when they are padded (no edge policy) & decoded at full resolution; in the
+     * other modes an image over the threshold is refused. By default the threshold is the number of pixels
+     * whose loaded image would fill the heap.
+     *
+     * @param pixels The largest number of pixels of a loaded image.
+     * @throws ModelException If the current image file cannot be read again, or is too large to be loaded in
+     *                        the current mode, in which case the threshold isn't changed.
+     */
+    public void setStreamingThreshold(long pixels) throws ModelException {
+        long previousStreamingThreshold = streamingThreshold;
+        streamingThreshold = pixels;
+        try {
+            setImage(imagePath);
+        } catch (IOException e) {
+            streamingThreshold = previousStreamingThreshold;
+            throw new ModelException(ERROR_MESSAGE_IMAGE_FILE);
+        } catch (ModelException e) {
+            streamingThreshold = previousStreamingThreshold;
+            throw e;
+        }
+    }
+
+    /**
+     * Sets the policy of the tiles along the edges of the image, reloading the current image file
+     * accordingly. With a policy, images aren't padded to powers of two: the image is tiled directly, so any
+     * resolution up to the width of the image is valid & no memory or work is spent on padding. With null,
+     * images are padded & divided into equal square tiles. Since the valid resolutions depend on the
+     * policy, the policy isn't changed if the current resolution isn't valid for the image tiled by it. An
+     * image tiled by a policy must be loaded whole, so the policy isn't set either while the current image
+     * is too large to be loaded (see setStreamingThreshold).
+     *
+     * @param edgePolicy The policy of the edge tiles, or null to pad images to powers of two.
+     * @throws ModelException If the current image file cannot be read again, is too large to be loaded with
+     *                        the new policy, or the current resolution isn't valid with the new policy; in
+     *                        all cases the policy & the image aren't changed.
+     */
+    public void setEdgePolicy(EdgePolicy edgePolicy) throws ModelException {
+        if (this.edgePolicy == edgePolicy) {
+            return;
+        }
+        EdgePolicy previousEdgePolicy = this.edgePolicy;
+        Image previousImage = image;
+        long previousImageGeneration = imageGeneration;
+        BrightnessSource previousBrightnessSource = brightnessSource;
+        int previousSubsampling = subsampling;
+        int previousFullImageWidth = fullImageWidth;
+        Dimension previousStreamedSize = streamedSize;
+        this.edgePolicy = edgePolicy;
+        try {
+            setImage(imagePath);
         } catch (IOException e) {
+            this.edgePolicy = previousEdgePolicy;
             throw new ModelException(ERROR_MESSAGE_IMAGE_FILE);
+        } catch (ModelException e) {
+            this.edgePolicy = previousEdgePolicy;
+            throw e;
         }
+        if (!isValidResolution(image, resolution)) {
+            // nothing was cached for the new image yet, so the previous image keeps its generation.
+            this.edgePolicy = previousEdgePolicy;
+            image = previousImage;
+            imageGeneration = previousImageGeneration;
+            brightnessSource = previousBrightnessSource;
+            subsampling = previousSubsampling;
+            fullImageWidth = previousFullImageWidth;
+            streamedSize = previousStreamedSize;
+            throw new ModelException(ERROR_MESSAGE_EDGE_POLICY_RESOLUTION);
+        }
+        resultCache.clear();
     }
 
     /**
      * Sets the output method for ASCII art based on a specified string argument.
      *
-     * @param args The argument specifying the output method (e.g., "console", "html").
+     * @param args The argument specifying the output method (e.g., "console", "ansi", "html").
      * @return The AsciiOutput object corresponding to the specified output method.
      * @throws ModelException If the specified output method is invalid.
      */
@@ -297,8 +722,11 @@ public class AsciiArtModel implements Model {
         switch (outputName) {
             case CONSOLE:
                 /* fallthrough */
+            case ANSI:
+                /* fallthrough */
             case HTML:
                 output = factory.build(outputName);
+                this.outputName = outputName;
                 break;
             default:
                 throw new ModelException(ERROR_MESSAGE_INCORRECT_OUTPUT);
@@ -308,30 +736,238 @@ public class AsciiArtModel implements Model {
 
     /**
      * Executes the ASCII art generation process and returns the result as a 2D char array.
+     * Results of recent conversions are cached, so the returned array may be shared between calls & must not
+     * be modified.
      *
      * @return The ASCII art represented as a 2D char array.
-     * @throws ModelException If the ASCII art generation process fails.
+     * @throws ModelException If the charset is empty, or the ASCII art generation process rejects the
+     *                        current settings.
      */
     @Override
     public char[][] execute() throws ModelException {
-        if (subImgCharMatcher.getCharSet().length == 0) {
+        char[] charset = subImgCharMatcher.getCharSet();
+        if (charset.length == 0) {
+            throw new ModelException(ERROR_MESSAGE_EMPTY_CHARSET);
+        }
+
+        char[][] result = resultCache.get(imageGeneration, resolution, charset);
+        if (result == null) {
+            subImgCharMatcher.histogramEqualization();
+            try {
+                if (streamedSize != null) {
+                    result = new StreamingAsciiArtAlgorithm(imagePath, resolution, subImgCharMatcher,
+                            linearLight).run();
+                } else {
+                    result = new AsciiArtAlgorithm(brightnessSource, resolution, subImgCharMatcher,
+                            edgePolicy, pool, workers).run();
+                }
+            } catch (IOException e) {
+                throw new ModelException(ERROR_MESSAGE_IMAGE_FILE);
+            } catch (IllegalArgumentException e) {
+                throw new ModelException(ERROR_MESSAGE_EXECUTE);
+            }
+            resultCache.put(imageGeneration, resolution, charset, result);
+        }
+        return result;
+    }
+
+    /**
+     * Converts all the image files of a directory, or all the image files listed (one path per line) in a
+     * text file, with the current settings, writing every result through the current output method: to the
+     * console, or with HTML output to a file named after the image file. The images are converted
+     * concurrently by the current number of workers (or by a pipeline of stages, see setPipelinedBatch), all
+     * sharing a snapshot of the current character set, so the character set may be changed as soon as the
+     * batch returns.
+     *
+     * @param args The path to the directory or to the file list.
+     * @return The report of the batch, including its throughput.
+     * @throws ModelException If the charset is empty, or the directory or file list can't be read.
+     */
+    @Override
+    public BatchReport convertBatch(String args) throws ModelException {
+        char[] charset = subImgCharMatcher.getCharSet();
+        if (charset.length == 0) {
             throw new ModelException(ERROR_MESSAGE_EMPTY_CHARSET);
         }
+        List<String> paths;
+        try {
+            paths = listBatch(parseArgsAsPath(args));
+        } catch (IOException e) {
+            throw new ModelException(ERROR_MESSAGE_BATCH);
+        }
+
+        SubImgCharMatcher snapshot = new SubImgCharMatcher(charset);
+        snapshot.setQuantized(subImgCharMatcher.isQuantized());
+        snapshot.setShapeMatching(subImgCharMatcher.isShapeMatching());
+        Function<String, AsciiOutput> outputFor;
+        if (outputName.equals(HTML)) {
+            outputFor = path -> factory.build(HTML, path + HTML_EXTENSION);
+        } else {
+            AsciiOutput console = factory.build(CONSOLE);
+            outputFor = path -> console;
+        }
+        if (pipelinedBatch) {
+            return new ConversionPipeline(snapshot, resolution, edgePolicy, linearLight,
+                    subsampledDecoding).run(paths, outputFor);
+        }
+        return new BatchConverter(snapshot, resolution, edgePolicy, linearLight, subsampledDecoding,
+                workers).run(paths, outputFor);
+    }
+
+    /**
+     * Retrieves the number of executions that were answered from the result cache.
+     *
+     * @return The number of result cache hits.
+     */
+    public long getResultCacheHits() {
+        return resultCache.getHits();
+    }
 
-        subImgCharMatcher.histogramEqualization();
-        AsciiArtAlgorithm art = new AsciiArtAlgorithm(image, resolution, subImgCharMatcher);
-        return art.run();
+    /**
+     * Retrieves the number of executions that had to run the ASCII art algorithm.
+     *
+     * @return The number of result cache misses.
+     */
+    public long getResultCacheMisses() {
+        return resultCache.getMisses();
     }
 
     /**
-     * Loads an image from the specified path.
+     * Loads the image from the specified path as the current image, at the level of detail the current
+     * resolution needs, & builds its brightness source. An image whose loaded image (see loadedPixels) would
+     * have more than streamingThreshold pixels isn't loaded: a padded image at full resolution is streamed,
+     * so only its dimensions are read, & in the other modes the image is refused. Nothing is changed unless
+     * the image is loaded or streamed.
      *
      * @param path The path to the image file.
+     * @throws IOException    If the image file cannot be found or read.
+     * @throws ModelException If the image is too large to be loaded in a mode which can't stream it.
+     */
+    private void setImage(String path) throws IOException, ModelException {
+        int newSubsampling = FULL_RESOLUTION;
+        int newFullImageWidth = 0;
+        Dimension newStreamedSize = null;
+        Dimension size = ImageDecoder.readSize(path);
+        if (subsampledDecoding) {
+            newFullImageWidth = size.width;
+            newSubsampling = chooseSubsampling(newFullImageWidth, resolution);
+        }
+        if (loadedPixels(size, newSubsampling) > streamingThreshold) {
+            if (edgePolicy != null || subsampledDecoding) {
+                throw new ModelException(ERROR_MESSAGE_IMAGE_TOO_LARGE);
+            }
+            newStreamedSize = size;
+        }
+        if (newStreamedSize != null) {
+            image = null;
+            brightnessSource = null;
+        } else {
+            image = loadImage(path, newSubsampling);
+            brightnessSource = buildBrightnessSource(image);
+        }
+        imageGeneration++;
+        streamedSize = newStreamedSize;
+        imagePath = path;
+        subsampling = newSubsampling;
+        fullImageWidth = newFullImageWidth;
+    }
+
+    /**
+     * Calculates the number of pixels of an image file once loaded by loadImage in the current mode:
+     * subsampled, & padded to powers of two unless an edge policy is set.
+     *
+     * @param size        The dimensions of the image file.
+     * @param subsampling The subsampling factor the image would be decoded with, 1 for full resolution.
+     * @return The number of pixels of the loaded image.
+     */
+    private long loadedPixels(Dimension size, int subsampling) {
+        // the decoded image has ceil(width / subsampling) x ceil(height / subsampling) pixels.
+        long width = (size.width + subsampling - 1) / subsampling;
+        long height = (size.height + subsampling - 1) / subsampling;
+        if (edgePolicy == null) {
+            width = ImageManipulator.nearestPowerOfTwo((int) width);
+            height = ImageManipulator.nearestPowerOfTwo((int) height);
+        }
+        return width * height;
+    }
+
+    /**
+     * Loads an image from the specified path, padded to powers of two unless an edge policy is set.
+     *
+     * @param path        The path to the image file.
+     * @param subsampling The subsampling factor to decode the image with, 1 for full resolution.
      * @return The loaded Image object.
      * @throws IOException If the image file cannot be found or read.
      */
-    private Image loadImage(String path) throws IOException {
-        return ImageManipulator.padImage(new Image(path));
+    private Image loadImage(String path, int subsampling) throws IOException {
+        Image loaded = new Image(path, subsampling);
+        return edgePolicy == null ? ImageManipulator.padImage(loaded) : loaded;
+    }
+
+    /**
+     * Builds the brightness source of a loaded image: a brightness pyramid of a padded image, or a
+     * summed-area table (which answers tiles of any size) of an image which isn't padded, in the current
+     * brightness mode.
+     *
+     * @param loaded The loaded image.
+     * @return The brightness source of the image.
+     */
+    private BrightnessSource buildBrightnessSource(Image loaded) {
+        return edgePolicy == null ? new BrightnessPyramid(loaded, linearLight) :
+                new IntegralImage(loaded, linearLight);
+    }
+
+    /**
+     * Checks if a resolution is valid for a loaded (or streamed) image, by the way the image is tiled.
+     *
+     * @param loaded        The loaded image, or null if the current image is streamed.
+     * @param newResolution The resolution to validate.
+     * @return true if the resolution is valid, false otherwise.
+     */
+    private boolean isValidResolution(Image loaded, int newResolution) {
+        if (loaded == null) {
+            // a streamed image is padded virtually, to the same powers of 2.
+            return ImageManipulator.isValidResolution(ImageManipulator.nearestPowerOfTwo(streamedSize.width),
+                    ImageManipulator.nearestPowerOfTwo(streamedSize.height), newResolution);
+        }
+        if (edgePolicy == null) {
+            // the padded image is a power of 2, therefore only resolutions dividing it evenly are valid.
+            return ImageManipulator.isValidResolution(loaded, newResolution);
+        }
+        return ImageManipulator.isValidResolution(loaded.getWidth(), loaded.getHeight(), newResolution,
+                edgePolicy);
+    }
+
+    /**
+     * Parses an explicit resolution from the input argument string.
+     *
+     * @param args The argument string containing the resolution.
+     * @return The resolution.
+     * @throws ModelException If the argument isn't a number.
+     */
+    private static int parseResolution(String args) throws ModelException {
+        try {
+            return Integer.parseInt(args.split(SPACE_DELIMITER)[0]);
+        } catch (NumberFormatException e) {
+            throw new ModelException(ERROR_MESSAGE_INCORRECT_RESOLUTION);
+        }
+    }
+
+    /**
+     * Chooses the largest power of two subsampling factor which still leaves at least
+     * MIN_PIXELS_PER_SEGMENT_EDGE decoded pixels along the edge of every segment of the given resolution.
+     *
+     * @param fullWidth  The width in pixels of the image file at full resolution.
+     * @param resolution The resolution the image is converted with.
+     * @return The subsampling factor, 1 when the full resolution is needed.
+     */
+    static int chooseSubsampling(int fullWidth, int resolution) {
+        int factor = FULL_RESOLUTION;
+        long neededWidth = (long) resolution * MIN_PIXELS_PER_SEGMENT_EDGE;
+        while ((fullWidth + 2L * factor - 1) / (2L * factor) >= neededWidth) {
+            factor *= 2;
+        }
+        return factor;
     }
 
     /**
@@ -352,12 +988,12 @@ public class AsciiArtModel implements Model {
         } else if (argument.equals(SPACE_STRING)) {
             //add space
             return new char[]{SPACE};
+        } else if (parseChar(argument) != INVALID_CHAR) {
+            // add single character
+            return new char[]{(char) parseChar(argument)};
         } else if (argument.contains(DELIMITER)) {
             // add range of characters
             return parseRange(argument);
-        } else if (isValidRangeChar(argument)) {
-            // add single character
-            return new char[]{argument.charAt(0)};
         } else {
             return null;
         }
@@ -365,21 +1001,30 @@ public class AsciiArtModel implements Model {
 
     /**
      * Parses a range of characters from a string. Used when adding or removing a range of characters to/from
-     * the character set.
+     * the character set. The bounds of the range may be given as characters or as code points (e.g.
+     * U+2800-U+28FF).
      *
      * @param argument The string specifying the range of characters.
-     * @return An array of characters within the specified range.
+     * @return An array of characters within the specified range, or null if the range isn't valid.
      */
     private static char[] parseRange(String argument) {
-        char firstChar = (char) Math.min(argument.split(DELIMITER)[0].charAt(0),
-                argument.split(DELIMITER)[1].charAt(0));
-        char lastChar = (char) Math.max(argument.split(DELIMITER)[0].charAt(0),
-                argument.split(DELIMITER)[1].charAt(0));
+        String[] bounds = argument.split(DELIMITER);
+        if (bounds.length != RANGE_BOUNDS) {
+            return null;
+        }
+        int first = parseChar(bounds[0]);
+        int last = parseChar(bounds[1]);
+        if (first == INVALID_CHAR || last == INVALID_CHAR) {
+            return null;
+        }
+        int firstChar = Math.min(first, last);
+        int lastChar = Math.max(first, last);
         char[] charSet = new char[lastChar - firstChar + 1];
 
-        for (char c = firstChar; c <= lastChar; c++) {
-            if (isValidRangeChar(c)) {
-                charSet[c - firstChar] = c;
+        // an int is iterated, since a char would overflow at the end of the BMP.
+        for (int c = firstChar; c <= lastChar; c++) {
+            if (SubImgCharMatcher.isValidChar((char) c)) {
+                charSet[c - firstChar] = (char) c;
             } else {
                 return null;
             }
@@ -388,24 +1033,61 @@ public class AsciiArtModel implements Model {
     }
 
     /**
-     * Validates if a string argument represents a valid single character within the allowable range for
-     * ASCII art generation.
+     * Parses a single valid character from a string, given either as the character itself or as its code
+     * point in the U+XXXX notation. Only the characters of the Basic Multilingual Plane are supported, since
+     * every character of the ASCII art is a single char.
      *
-     * @param argument The string to validate.
-     * @return true if the string represents a single valid character; false otherwise.
+     * @param token The string to parse.
+     * @return The character, or INVALID_CHAR if the string doesn't represent a single valid character.
      */
-    private static boolean isValidRangeChar(String argument) {
-        return argument.length() == 1 && isValidRangeChar(argument.charAt(0));
+    private static int parseChar(String token) {
+        int c = INVALID_CHAR;
+        if (token.length() == 1) {
+            c = token.charAt(0);
+        } else if (token.length() > CODE_POINT_PREFIX.length() &&
+                token.regionMatches(true, 0, CODE_POINT_PREFIX, 0, CODE_POINT_PREFIX.length())) {
+            try {
+                c = Integer.parseInt(token.substring(CODE_POINT_PREFIX.length()), HEX_RADIX);
+            } catch (NumberFormatException e) {
+                return INVALID_CHAR;
+            }
+        }
+        if (c < Character.MIN_VALUE || c > Character.MAX_VALUE || !SubImgCharMatcher.isValidChar((char) c)) {
+            return INVALID_CHAR;
+        }
+        return c;
     }
 
     /**
-     * Validates if a character is within the allowable range for ASCII art generation.
+     * Lists the image files of a batch: the regular files of a directory (not recursively) with the suffix
+     * of a readable image format, in the order of their names (so e.g. the HTML outputs of a previous batch
+     * are skipped), or the non-blank lines of a file list.
      *
-     * @param c The character to validate.
-     * @return true if the character is within the valid range; false otherwise.
+     * @param path The path to the directory or to the file list.
+     * @return The paths of the image files.
+     * @throws IOException If the directory or the file list can't be read.
      */
-    private static boolean isValidRangeChar(char c) {
-        return (c >= SubImgCharMatcher.FIRST_CHAR_RANGE && c <= SubImgCharMatcher.LAST_CHAR_RANGE);
+    private static List<String> listBatch(String path) throws IOException {
+        File batch = new File(path);
+        List<String> paths = new ArrayList<>();
+        if (batch.isDirectory()) {
+            File[] files = batch.listFiles(file -> file.isFile() &&
+                    ImageDecoder.hasReadableSuffix(file.getName()));
+            if (files == null) {
+                throw new IOException(path);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                paths.add(file.getPath());
+            }
+        } else {
+            for (String line : Files.readAllLines(Paths.get(path))) {
+                if (!line.isBlank()) {
+                    paths.add(line.strip());
+                }
+            }
+        }
+        return paths;
     }
 
     /**
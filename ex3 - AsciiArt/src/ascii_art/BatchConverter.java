@@ -0,0 +1,208 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import image.BrightnessPyramid;
+import image.BrightnessSource;
+import image.EdgePolicy;
+import image.Image;
+import image.ImageDecoder;
+import image.ImageManipulator;
+import image.IntegralImage;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Converts many image files into ASCII art concurrently, one image per task of a work-stealing ForkJoin
+ * pool, so a worker that finishes its images early steals the queued ones of the others. All the workers
+ * share a single character matcher, whose tables are built once before the batch starts, & therefore a
+ * single copy of the glyph brightness values. The number of images in flight (decoded but not yet written)
+ * is bounded, so the memory of a batch doesn't grow with the number of files.
+ */
+public class BatchConverter {
+
+    private static final String ERROR_MESSAGE_INTERRUPTED = "Interrupted while converting the batch.";
+
+    private static final String ERROR_MESSAGE_INVALID_WORKERS = "Invalid number of workers or images in " +
+            "flight: ";
+
+    /**
+     * The number of images in flight per worker by default: one being converted & one waiting, so a worker
+     * never waits for the next image to be submitted.
+     */
+    private static final int IN_FLIGHT_PER_WORKER = 2;
+
+    /**
+     * The subsampling factor of an image decoded at full resolution.
+     */
+    private static final int FULL_RESOLUTION = 1;
+
+    private final SubImgCharMatcher subImgCharMatcher;
+    private final int resolution;
+    private final EdgePolicy edgePolicy;
+    private final boolean linearLight;
+    private final boolean subsampledDecoding;
+    private final int workers;
+    private final int maxInFlight;
+
+    /**
+     * Constructs a BatchConverter with IN_FLIGHT_PER_WORKER images in flight per worker.
+     *
+     * @param subImgCharMatcher  The matcher shared by all the workers. It must not be modified while a batch
+     *                           runs.
+     * @param resolution         The resolution every image is converted with.
+     * @param edgePolicy         The policy of the edge tiles, or null to pad the images to powers of two.
+     * @param linearLight        Whether to average the brightness of segments in linear light.
+     * @param subsampledDecoding Whether to decode the images at the reduced level of detail the resolution
+     *                           needs.
+     * @param workers            The number of images converted concurrently.
+     * @throws IllegalArgumentException If the number of workers isn't positive.
+     */
+    public BatchConverter(SubImgCharMatcher subImgCharMatcher, int resolution, EdgePolicy edgePolicy,
+                          boolean linearLight, boolean subsampledDecoding, int workers)
+            throws IllegalArgumentException {
+        this(subImgCharMatcher, resolution, edgePolicy, linearLight, subsampledDecoding, workers,
+                workers * IN_FLIGHT_PER_WORKER);
+    }
+
+    /**
+     * Constructs a BatchConverter with an explicit bound on the images in flight.
+     *
+     * @param subImgCharMatcher  The matcher shared by all the workers. It must not be modified while a batch
+     *                           runs.
+     * @param resolution         The resolution every image is converted with.
+     * @param edgePolicy         The policy of the edge tiles, or null to pad the images to powers of two.
+     * @param linearLight        Whether to average the brightness of segments in linear light.
+     * @param subsampledDecoding Whether to decode the images at the reduced level of detail the resolution
+     *                           needs.
+     * @param workers            The number of images converted concurrently.
+     * @param maxInFlight        The maximal number of images decoded but not yet written, at least workers.
+     * @throws IllegalArgumentException If the number of workers isn't positive, or the bound is smaller.
+     */
+    public BatchConverter(SubImgCharMatcher subImgCharMatcher, int resolution, EdgePolicy edgePolicy,
+                          boolean linearLight, boolean subsampledDecoding, int workers, int maxInFlight)
+            throws IllegalArgumentException {
+        if (workers < 1 || maxInFlight < workers) {
+            throw new IllegalArgumentException(ERROR_MESSAGE_INVALID_WORKERS + workers + ", " + maxInFlight);
+        }
+        this.subImgCharMatcher = subImgCharMatcher;
+        this.resolution = resolution;
+        this.edgePolicy = edgePolicy;
+        this.linearLight = linearLight;
+        this.subsampledDecoding = subsampledDecoding;
+        this.workers = workers;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Converts the given image files & writes every result through the output chosen for its file. The
+     * calling thread submits the files in order, blocking whenever maxInFlight images are in flight, &
+     * returns once all of them are written. Writes to an output shared by several files are serialized, so
+     * their results don't interleave. A file which can't be converted is counted as failed & skipped.
+     *
+     * @param paths     The paths of the image files.
+     * @param outputFor Chooses the output of every file by its path.
+     * @return The report of the batch.
+     * @throws IllegalStateException If the calling thread was interrupted while waiting for the workers.
+     */
+    public BatchReport run(List<String> paths, Function<String, AsciiOutput> outputFor)
+            throws IllegalStateException {
+        subImgCharMatcher.histogramEqualization();
+        AtomicInteger converted = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        long start = System.nanoTime();
+
+        try {
+            for (String path : paths) {
+                inFlight.acquire();
+                pool.execute(() -> {
+                    try {
+                        write(outputFor.apply(path), convert(path));
+                        converted.incrementAndGet();
+                    } catch (IOException | RuntimeException e) {
+                        failed.incrementAndGet();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            }
+            // all the permits are free again only once every image was written.
+            inFlight.acquire(maxInFlight);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ERROR_MESSAGE_INTERRUPTED, e);
+        } finally {
+            pool.shutdown();
+        }
+        return new BatchReport(converted.get(), failed.get(), System.nanoTime() - start);
+    }
+
+    /**
+     * Converts a single image file on the calling worker. The decoded image & its brightness source are
+     * dropped as soon as the conversion returns.
+     *
+     * @param path The path of the image file.
+     * @return The ASCII art of the image.
+     * @throws IOException              If the file can't be read or isn't an image.
+     * @throws IllegalArgumentException If the resolution is not valid for the image.
+     */
+    private char[][] convert(String path) throws IOException, IllegalArgumentException {
+        Image image = decode(path, resolution, edgePolicy, subsampledDecoding);
+        BrightnessSource source = buildSource(image, edgePolicy, linearLight);
+        return new AsciiArtAlgorithm(source, resolution, subImgCharMatcher, edgePolicy, null, 1).run();
+    }
+
+    /**
+     * Decodes an image file for a conversion, at the level of detail the resolution needs when subsampled
+     * decoding is on, & padded to powers of two when there's no edge policy.
+     *
+     * @param path               The path of the image file.
+     * @param resolution         The resolution the image is converted with.
+     * @param edgePolicy         The policy of the edge tiles, or null to pad the image.
+     * @param subsampledDecoding Whether to decode the image at a reduced level of detail.
+     * @return The decoded image.
+     * @throws IOException If the file can't be read or isn't an image.
+     */
+    static Image decode(String path, int resolution, EdgePolicy edgePolicy, boolean subsampledDecoding)
+            throws IOException {
+        int subsampling = subsampledDecoding ?
+                AsciiArtModel.chooseSubsampling(ImageDecoder.readSize(path).width, resolution) :
+                FULL_RESOLUTION;
+        Image image = new Image(path, subsampling);
+        return edgePolicy == null ? ImageManipulator.padImage(image) : image;
+    }
+
+    /**
+     * Builds the brightness source of a decoded image: a brightness pyramid of a padded image, or a
+     * summed-area table of an image tiled by an edge policy.
+     *
+     * @param image       The decoded image.
+     * @param edgePolicy  The policy of the edge tiles, or null if the image is padded.
+     * @param linearLight Whether to average the brightness of segments in linear light.
+     * @return The brightness source of the image.
+     */
+    static BrightnessSource buildSource(Image image, EdgePolicy edgePolicy, boolean linearLight) {
+        return edgePolicy == null ? new BrightnessPyramid(image, linearLight) :
+                new IntegralImage(image, linearLight);
+    }
+
+    /**
+     * Writes a result through an output, holding the output's lock so results written through the same
+     * output (e.g. the console) don't interleave.
+     *
+     * @param output The output to write through.
+     * @param art    The ASCII art to write.
+     */
+    private static void write(AsciiOutput output, char[][] art) {
+        synchronized (output) {
+            output.out(art);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package ascii_art;
+
+import java.util.List;
+
+/**
+ * The summary of a batch conversion: how many images were converted, how many couldn't be converted (e.g.
+ * files which aren't images, or images too small for the resolution), & how long the whole batch took. The
+ * report of a pipelined batch includes the metrics of every stage of the pipeline too.
+ */
+public class BatchReport {
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The number of images which were converted & written.
+     */
+    private final int converted;
+
+    /**
+     * The number of images which couldn't be converted.
+     */
+    private final int failed;
+
+    /**
+     * The wall-clock time of the whole batch in nanoseconds.
+     */
+    private final long elapsedNanos;
+
+    /**
+     * The metrics of the stages of a pipelined batch, in pipeline order, empty for other batches.
+     */
+    private final List<StageMetrics> stages;
+
+    /**
+     * Constructs the report of a finished batch.
+     *
+     * @param converted    The number of images which were converted & written.
+     * @param failed       The number of images which couldn't be converted.
+     * @param elapsedNanos The wall-clock time of the whole batch in nanoseconds.
+     */
+    public BatchReport(int converted, int failed, long elapsedNanos) {
+        this(converted, failed, elapsedNanos, List.of());
+    }
+
+    /**
+     * Constructs the report of a finished pipelined batch.
+     *
+     * @param converted    The number of images which were converted & written.
+     * @param failed       The number of images which couldn't be converted.
+     * @param elapsedNanos The wall-clock time of the whole batch in nanoseconds.
+     * @param stages       The metrics of the stages of the pipeline, in pipeline order.
+     */
+    public BatchReport(int converted, int failed, long elapsedNanos, List<StageMetrics> stages) {
+        this.converted = converted;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.stages = stages;
+    }
+
+    /**
+     * Retrieves the number of images which were converted & written.
+     *
+     * @return The number of converted images.
+     */
+    public int getConverted() {
+        return converted;
+    }
+
+    /**
+     * Retrieves the number of images which couldn't be converted.
+     *
+     * @return The number of failed images.
+     */
+    public int getFailed() {
+        return failed;
+    }
+
+    /**
+     * Retrieves the wall-clock time of the whole batch.
+     *
+     * @return The elapsed time in seconds.
+     */
+    public double getElapsedSeconds() {
+        return elapsedNanos / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Retrieves the metrics of the stages of a pipelined batch.
+     *
+     * @return The metrics of the stages in pipeline order, empty if the batch wasn't pipelined.
+     */
+    public List<StageMetrics> getStages() {
+        return stages;
+    }
+
+    /**
+     * Retrieves the throughput of the batch.
+     *
+     * @return The number of converted images per second of wall-clock time, 0 for an empty batch.
+     */
+    public double getImagesPerSecond() {
+        return elapsedNanos == 0 ? 0 : converted / getElapsedSeconds();
+    }
+}
@@ -0,0 +1,146 @@
+package ascii_art;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A bounded cache of ASCII art conversion results, keyed by the generation of the converted image (a
+ * number the model assigns to every image it loads), the resolution & the character set used for the
+ * conversion. The key holds no reference to the image, so the cache never keeps a replaced image alive.
+ * When the cache is full, the least recently used result is evicted. The cache counts its hits & misses.
+ */
+class ConversionCache {
+
+    /**
+     * Whether the underlying map should be ordered by access (rather than insertion), which makes its
+     * eldest entry the least recently used one.
+     */
+    private static final boolean ACCESS_ORDER = true;
+
+    /**
+     * The load factor of the underlying map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The key of a single conversion result.
+     */
+    private static class Key {
+        private final long imageGeneration;
+        private final int resolution;
+        private final String charset;
+
+        /**
+         * Constructs the key of a conversion.
+         *
+         * @param imageGeneration The generation of the converted image.
+         * @param resolution      The resolution of the conversion.
+         * @param charset         The character set of the conversion, sorted.
+         */
+        Key(long imageGeneration, int resolution, char[] charset) {
+            this.imageGeneration = imageGeneration;
+            this.resolution = resolution;
+            this.charset = new String(charset);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return imageGeneration == key.imageGeneration && resolution == key.resolution &&
+                    charset.equals(key.charset);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(imageGeneration, resolution, charset);
+        }
+    }
+
+    /**
+     * The cached results, ordered from the least recently used to the most recently used.
+     */
+    private final LinkedHashMap<Key, char[][]> results;
+
+    /**
+     * The number of lookups that found a cached result.
+     */
+    private long hits;
+
+    /**
+     * The number of lookups that didn't find a cached result.
+     */
+    private long misses;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param capacity The maximal number of results kept in the cache.
+     */
+    ConversionCache(int capacity) {
+        results = new LinkedHashMap<>(capacity, LOAD_FACTOR, ACCESS_ORDER) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, char[][]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Looks up the result of a conversion, marking it as the most recently used one.
+     *
+     * @param imageGeneration The generation of the converted image.
+     * @param resolution      The resolution of the conversion.
+     * @param charset         The character set of the conversion, sorted.
+     * @return The cached result, or null if the conversion isn't cached.
+     */
+    char[][] get(long imageGeneration, int resolution, char[] charset) {
+        char[][] result = results.get(new Key(imageGeneration, resolution, charset));
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Stores the result of a conversion, evicting the least recently used result if the cache is full.
+     *
+     * @param imageGeneration The generation of the converted image.
+     * @param resolution      The resolution of the conversion.
+     * @param charset         The character set of the conversion, sorted.
+     * @param result          The result of the conversion.
+     */
+    void put(long imageGeneration, int resolution, char[] charset, char[][] result) {
+        results.put(new Key(imageGeneration, resolution, charset), result);
+    }
+
+    /**
+     * Removes all the cached results, used when a setting that isn't part of the key changes.
+     */
+    void clear() {
+        results.clear();
+    }
+
+    /**
+     * Retrieves the number of lookups that found a cached result.
+     *
+     * @return The number of cache hits.
+     */
+    long getHits() {
+        return hits;
+    }
+
+    /**
+     * Retrieves the number of lookups that didn't find a cached result.
+     *
+     * @return The number of cache misses.
+     */
+    long getMisses() {
+        return misses;
+    }
+}
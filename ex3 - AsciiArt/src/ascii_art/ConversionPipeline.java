@@ -0,0 +1,273 @@
+package ascii_art;
+
+import ascii_output.AsciiOutput;
+import image.BrightnessSource;
+import image.EdgePolicy;
+import image.Image;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * Converts many image files into ASCII art as a pipeline of stages, each running on its own thread: decoding
+ * the image files, building their brightness sources (the grayscale conversion & summing), tiling & matching
+ * the characters, & writing the results. The stages are connected by bounded queues, so while one image is
+ * decoded the previous ones are matched & written, & a stage that falls behind blocks the stages feeding it
+ * instead of letting the decoded images pile up. The throughput of the pipeline is therefore limited by its
+ * slowest stage rather than by the sum of all the stages, & the metrics of every stage show which one it is.
+ */
+public class ConversionPipeline {
+
+    private static final String ERROR_MESSAGE_INTERRUPTED = "Interrupted while converting the batch.";
+
+    private static final String ERROR_MESSAGE_INVALID_CAPACITY = "Invalid queue capacity: ";
+
+    /**
+     * The capacity of the queue in front of every stage by default.
+     */
+    private static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    private static final String DECODE_STAGE = "decode";
+    private static final String GRAYSCALE_STAGE = "grayscale";
+    private static final String MATCH_STAGE = "match";
+    private static final String WRITE_STAGE = "write";
+
+    /**
+     * An image file on its way through the pipeline. Every stage fills the field the next stage needs & drops
+     * the one it consumed. A summed-area table doesn't refer to its image, so with an edge policy the decoded
+     * pixels are released as soon as the table is built; a brightness pyramid answers single pixels (level 0)
+     * from its image, so in the padded mode the pixels are kept until the match stage drops the source.
+     */
+    private static class Job {
+        private final String path;
+        private Image image;
+        private BrightnessSource source;
+        private char[][] art;
+        private boolean failed;
+
+        /**
+         * Constructs the job of an image file.
+         *
+         * @param path The path of the image file, or null for the end of the batch.
+         */
+        private Job(String path) {
+            this.path = path;
+        }
+    }
+
+    /**
+     * The work of a single stage on a single job.
+     */
+    @FunctionalInterface
+    private interface StageTask {
+        /**
+         * Processes a job which didn't fail in a previous stage.
+         *
+         * @param job The job to process.
+         * @throws IOException If the image file of the job can't be read.
+         */
+        void process(Job job) throws IOException;
+    }
+
+    /**
+     * The marker passed through all the stages after the last image file, telling every stage to finish.
+     */
+    private static final Job END_OF_BATCH = new Job(null);
+
+    private final SubImgCharMatcher subImgCharMatcher;
+    private final int resolution;
+    private final EdgePolicy edgePolicy;
+    private final boolean linearLight;
+    private final boolean subsampledDecoding;
+    private final int queueCapacity;
+
+    /**
+     * Constructs a ConversionPipeline with DEFAULT_QUEUE_CAPACITY images queued in front of every stage.
+     *
+     * @param subImgCharMatcher  The matcher of the match stage. It must not be modified while a batch runs.
+     * @param resolution         The resolution every image is converted with.
+     * @param edgePolicy         The policy of the edge tiles, or null to pad the images to powers of two.
+     * @param linearLight        Whether to average the brightness of segments in linear light.
+     * @param subsampledDecoding Whether to decode the images at the reduced level of detail the resolution
+     *                           needs.
+     */
+    public ConversionPipeline(SubImgCharMatcher subImgCharMatcher, int resolution, EdgePolicy edgePolicy,
+                              boolean linearLight, boolean subsampledDecoding) {
+        this(subImgCharMatcher, resolution, edgePolicy, linearLight, subsampledDecoding,
+                DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Constructs a ConversionPipeline with an explicit capacity of the queues between the stages.
+     *
+     * @param subImgCharMatcher  The matcher of the match stage. It must not be modified while a batch runs.
+     * @param resolution         The resolution every image is converted with.
+     * @param edgePolicy         The policy of the edge tiles, or null to pad the images to powers of two.
+     * @param linearLight        Whether to average the brightness of segments in linear light.
+     * @param subsampledDecoding Whether to decode the images at the reduced level of detail the resolution
+     *                           needs.
+     * @param queueCapacity      The number of images which may wait in front of every stage.
+     * @throws IllegalArgumentException If the capacity isn't positive.
+     */
+    public ConversionPipeline(SubImgCharMatcher subImgCharMatcher, int resolution, EdgePolicy edgePolicy,
+                              boolean linearLight, boolean subsampledDecoding, int queueCapacity)
+            throws IllegalArgumentException {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException(ERROR_MESSAGE_INVALID_CAPACITY + queueCapacity);
+        }
+        this.subImgCharMatcher = subImgCharMatcher;
+        this.resolution = resolution;
+        this.edgePolicy = edgePolicy;
+        this.linearLight = linearLight;
+        this.subsampledDecoding = subsampledDecoding;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Converts the given image files & writes every result through the output chosen for its file, in the
+     * order of the files. The calling thread feeds the paths to the first stage, blocking whenever its queue
+     * is full, & returns once the last result is written. A file which can't be converted is counted as
+     * failed by the stage it failed in & skipped by the remaining stages. An Error (such as running out of
+     * memory while decoding a huge image) stops the batch instead: every stage counts the remaining files as
+     * failed & passes them on without processing them, so no stage blocks, & the Error is rethrown once all
+     * the stages have ended.
+     *
+     * @param paths     The paths of the image files.
+     * @param outputFor Chooses the output of every file by its path.
+     * @return The report of the batch, including the metrics of every stage.
+     * @throws IllegalStateException If the calling thread was interrupted while waiting for the stages.
+     * @throws Error                 The first Error thrown by a stage, after all the stages have ended.
+     */
+    public BatchReport run(List<String> paths, Function<String, AsciiOutput> outputFor)
+            throws IllegalStateException, Error {
+        subImgCharMatcher.histogramEqualization();
+        List<StageMetrics> metrics = List.of(new StageMetrics(DECODE_STAGE),
+                new StageMetrics(GRAYSCALE_STAGE), new StageMetrics(MATCH_STAGE),
+                new StageMetrics(WRITE_STAGE));
+        List<BlockingQueue<Job>> queues = new ArrayList<>();
+        for (int i = 0; i < metrics.size(); i++) {
+            queues.add(new ArrayBlockingQueue<>(queueCapacity));
+        }
+        int[] converted = new int[1];
+        AtomicInteger failed = new AtomicInteger();
+        AtomicReference<Error> error = new AtomicReference<>();
+        List<StageTask> tasks = List.of(
+                job -> job.image = BatchConverter.decode(job.path, resolution, edgePolicy,
+                        subsampledDecoding),
+                job -> {
+                    job.source = BatchConverter.buildSource(job.image, edgePolicy, linearLight);
+                    job.image = null;
+                },
+                job -> {
+                    job.art = new AsciiArtAlgorithm(job.source, resolution, subImgCharMatcher, edgePolicy,
+                            null, 1).run();
+                    job.source = null;
+                },
+                job -> {
+                    outputFor.apply(job.path).out(job.art);
+                    job.art = null;
+                    converted[0]++;
+                });
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            BlockingQueue<Job> input = queues.get(i);
+            BlockingQueue<Job> output = i + 1 < queues.size() ? queues.get(i + 1) : null;
+            StageMetrics stageMetrics = metrics.get(i);
+            StageTask task = tasks.get(i);
+            Thread thread = new Thread(() -> runStage(input, output, stageMetrics, task, failed, error),
+                    stageMetrics.getName());
+            threads.add(thread);
+            thread.start();
+        }
+
+        long start = System.nanoTime();
+        try {
+            for (String path : paths) {
+                queues.get(0).put(new Job(path));
+            }
+            queues.get(0).put(END_OF_BATCH);
+            // joining the threads also makes their metrics & counter visible to this thread.
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } catch (InterruptedException e) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ERROR_MESSAGE_INTERRUPTED, e);
+        }
+        if (error.get() != null) {
+            throw error.get();
+        }
+        return new BatchReport(converted[0], failed.get(), System.nanoTime() - start, metrics);
+    }
+
+    /**
+     * The loop of a single stage: takes jobs from the input queue, processes the ones which didn't fail &
+     * passes all of them on, until the end of the batch (which is passed on too). A job whose processing
+     * throws an exception is marked & counted as failed rather than stopping the stage, since a stopped stage
+     * would block the stages feeding it forever. Once any stage threw an Error, the stage keeps draining its
+     * input the same way, but marks & counts every remaining job as failed instead of processing it.
+     *
+     * @param input   The queue of the jobs waiting for the stage.
+     * @param output  The queue of the next stage, or null for the last stage.
+     * @param metrics The metrics of the stage.
+     * @param task    The work of the stage on a single job.
+     * @param failed  The counter of the failed jobs, shared by all the stages.
+     * @param error   The first Error thrown by any stage, shared by all the stages.
+     */
+    private static void runStage(BlockingQueue<Job> input, BlockingQueue<Job> output, StageMetrics metrics,
+                                 StageTask task, AtomicInteger failed, AtomicReference<Error> error) {
+        try {
+            while (true) {
+                metrics.recordQueueDepth(input.size());
+                Job job = input.take();
+                if (job != END_OF_BATCH && !job.failed && error.get() != null) {
+                    fail(job, failed);
+                } else if (job != END_OF_BATCH && !job.failed) {
+                    long start = System.nanoTime();
+                    try {
+                        task.process(job);
+                    } catch (IOException | RuntimeException e) {
+                        fail(job, failed);
+                    } catch (Error e) {
+                        fail(job, failed);
+                        error.compareAndSet(null, e);
+                    }
+                    metrics.recordLatency(System.nanoTime() - start);
+                }
+                if (output != null) {
+                    output.put(job);
+                }
+                if (job == END_OF_BATCH) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Marks a job as failed, counts it & drops everything it holds.
+     *
+     * @param job    The job.
+     * @param failed The counter of the failed jobs.
+     */
+    private static void fail(Job job, AtomicInteger failed) {
+        job.failed = true;
+        failed.incrementAndGet();
+        job.image = null;
+        job.source = null;
+        job.art = null;
+    }
+}
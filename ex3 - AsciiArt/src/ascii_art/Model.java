@@ -53,6 +53,15 @@ public interface Model {
     int setResolution(String args) throws ModelException; //int resolution
     //    int setResolution(int resolution) throws ModelException;
 
+    /**
+     * Sets the number of workers used for converting the image into ASCII art.
+     *
+     * @param args The number of workers as a string.
+     * @return The number of workers that was set.
+     * @throws ModelException If the specified number of workers is invalid.
+     */
+    int setWorkers(String args) throws ModelException;
+
     /**
      * Sets the image file to be used for ASCII art generation.
      *
@@ -78,4 +87,14 @@ public interface Model {
      * @throws ModelException If there's an error during the ASCII art generation process.
      */
     char[][] execute() throws ModelException;
+
+    /**
+     * Converts all the image files of a directory or of a file list with the current settings, writing every
+     * result through the current output destination.
+     *
+     * @param args The path to the directory or to the file list.
+     * @return The report of the batch, including its throughput.
+     * @throws ModelException If the batch can't be started.
+     */
+    BatchReport convertBatch(String args) throws ModelException;
 }
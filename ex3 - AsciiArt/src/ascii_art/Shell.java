@@ -35,6 +35,31 @@ public class Shell {
      */
     private static final String SET_RESOLUTION = "Resolution set to " + RESOLUTION_PLACEHOLDER + ".";
 
+    /**
+     * Placeholder text used within messages to denote the current number of workers.
+     */
+    private static final String WORKERS_PLACEHOLDER = "<current workers>";
+
+    /**
+     * Message format for indicating successful setting of the number of workers.
+     */
+    private static final String SET_WORKERS = "Workers set to " + WORKERS_PLACEHOLDER + ".";
+
+    /**
+     * Message format for reporting a finished batch: the number of converted & failed images, the elapsed
+     * seconds & the throughput in images per second.
+     */
+    private static final String BATCH_REPORT = "Converted %d images (%d failed) in %.2f seconds, " +
+            "%.1f images per second.";
+
+    /**
+     * Message format for reporting the metrics of a single stage of a pipelined batch: its name, the number
+     * of images it processed, their average & maximal latency in milliseconds, & the average & maximal depth
+     * of its input queue.
+     */
+    private static final String STAGE_REPORT = "  %s: %d images, latency %.2f ms average %.2f ms max, " +
+            "queue depth %.2f average %d max.";
+
     /**
      * Message displayed when the user enters an invalid command.
      */
@@ -60,6 +85,11 @@ public class Shell {
      */
     private static final String SET_RESOLUTION_COMMAND = "res";
 
+    /**
+     * The command keyword for setting the number of workers used for the conversion.
+     */
+    private static final String SET_WORKERS_COMMAND = "workers";
+
     /**
      * The command keyword for setting the image file to be converted into ASCII art.
      */
@@ -75,6 +105,11 @@ public class Shell {
      */
     private static final String ASCII_ART_COMMAND = "asciiArt";
 
+    /**
+     * The command keyword for converting all the images of a directory or of a file list.
+     */
+    private static final String BATCH_COMMAND = "batch";
+
     /**
      * The command keyword for exiting the application.
      */
@@ -172,9 +207,11 @@ public class Shell {
                 Map.entry(ADD_CHARS_COMMAND, (Consumer) this::add),
                 Map.entry(REMOVE_CHARS_COMMAND, (Consumer) this::remove),
                 Map.entry(SET_RESOLUTION_COMMAND, (Consumer) this::res),
+                Map.entry(SET_WORKERS_COMMAND, (Consumer) this::workers),
                 Map.entry(SET_IMAGE_COMMAND, (Consumer) this::image),
                 Map.entry(SET_OUTPUT_COMMAND, (Consumer) this::output),
                 Map.entry(ASCII_ART_COMMAND, (Consumer) this::asciiArt),
+                Map.entry(BATCH_COMMAND, (Consumer) this::batch),
                 Map.entry(EXIT_COMMAND, (Consumer) this::exit)
         ));
     }
@@ -185,6 +222,7 @@ public class Shell {
      * @param args Command arguments, not used for this command.
      */
     private void exit(String args) {
+        closeView();
         running = false;
     }
 
@@ -199,6 +237,25 @@ public class Shell {
         view.out(output);
     }
 
+    /**
+     * Converts all the images of a directory or of a file list, outputting every result using the
+     * configured output method, & reports the throughput of the batch (& the metrics of its stages, when
+     * pipelined).
+     *
+     * @param args The path to the directory or to the file list.
+     * @throws ModelException If the batch can't be started.
+     */
+    private void batch(String args) throws ModelException {
+        BatchReport report = model.convertBatch(args);
+        System.out.println(String.format(BATCH_REPORT, report.getConverted(), report.getFailed(),
+                report.getElapsedSeconds(), report.getImagesPerSecond()));
+        for (StageMetrics stage : report.getStages()) {
+            System.out.println(String.format(STAGE_REPORT, stage.getName(), stage.getItems(),
+                    stage.getAverageLatencyMillis(), stage.getMaxLatencyMillis(),
+                    stage.getAverageQueueDepth(), stage.getMaxQueueDepth()));
+        }
+    }
+
     /**
      * Changes the output destination for ASCII art, such as switching between console and HTML file output.
      *
@@ -206,7 +263,23 @@ public class Shell {
      * @throws ModelException If the specified output destination is invalid.
      */
     private void output(String args) throws ModelException {
-        this.view = model.setOutput(args);
+        AsciiOutput next = model.setOutput(args);
+        closeView();
+        this.view = next;
+    }
+
+    /**
+     * Closes the current output destination, if it holds any resource (such as the alternate screen of the
+     * ANSI output), before it is replaced or the shell exits.
+     */
+    private void closeView() {
+        if (view instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) view).close();
+            } catch (Exception e) {
+                System.out.println(e.getMessage());
+            }
+        }
     }
 
     /**
@@ -230,6 +303,17 @@ public class Shell {
         System.out.println(SET_RESOLUTION.replaceAll(RESOLUTION_PLACEHOLDER, Integer.toString(current)));
     }
 
+    /**
+     * Sets the number of workers used for ASCII art generation.
+     *
+     * @param args The number of workers as a string.
+     * @throws ModelException If the specified number of workers is invalid.
+     */
+    private void workers(String args) throws ModelException {
+        int current = model.setWorkers(args);
+        System.out.println(SET_WORKERS.replaceAll(WORKERS_PLACEHOLDER, Integer.toString(current)));
+    }
+
     /**
      * Removes characters from the set used for ASCII art generation.
      *
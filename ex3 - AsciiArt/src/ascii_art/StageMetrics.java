@@ -0,0 +1,149 @@
+package ascii_art;
+
+/**
+ * The metrics of a single stage of a ConversionPipeline: how many images it processed, how long processing
+ * them took, & how deep its input queue was whenever it took the next image. A stage whose queue is usually
+ * full is fed faster than it works, i.e. it (or a later stage) is the bottleneck of the pipeline.
+ * The metrics are updated only by the thread of the stage, & read once that thread has finished.
+ */
+public class StageMetrics {
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * The number of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    /**
+     * The name of the stage.
+     */
+    private final String name;
+
+    /**
+     * The number of images the stage processed.
+     */
+    private int items;
+
+    /**
+     * The total time the stage spent processing images, in nanoseconds.
+     */
+    private long totalNanos;
+
+    /**
+     * The longest time the stage spent processing a single image, in nanoseconds.
+     */
+    private long maxNanos;
+
+    /**
+     * The sum of the depths of the input queue sampled before every take.
+     */
+    private long depthSum;
+
+    /**
+     * The number of samples of the depth of the input queue.
+     */
+    private int depthSamples;
+
+    /**
+     * The deepest the input queue was when sampled.
+     */
+    private int maxDepth;
+
+    /**
+     * Constructs the empty metrics of a stage.
+     *
+     * @param name The name of the stage.
+     */
+    StageMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records the processing of a single image.
+     *
+     * @param nanos The time spent processing the image, in nanoseconds.
+     */
+    void recordLatency(long nanos) {
+        items++;
+        totalNanos += nanos;
+        maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    /**
+     * Records a sample of the depth of the input queue.
+     *
+     * @param depth The number of images waiting in the input queue.
+     */
+    void recordQueueDepth(int depth) {
+        depthSum += depth;
+        depthSamples++;
+        maxDepth = Math.max(maxDepth, depth);
+    }
+
+    /**
+     * Retrieves the name of the stage.
+     *
+     * @return The name of the stage.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Retrieves the number of images the stage processed.
+     *
+     * @return The number of processed images.
+     */
+    public int getItems() {
+        return items;
+    }
+
+    /**
+     * Retrieves the total time the stage spent processing images.
+     *
+     * @return The busy time in seconds.
+     */
+    public double getBusySeconds() {
+        return totalNanos / NANOS_PER_SECOND;
+    }
+
+    /**
+     * Retrieves the average time the stage spent processing a single image.
+     *
+     * @return The average latency in milliseconds, 0 if no image was processed.
+     */
+    public double getAverageLatencyMillis() {
+        return items == 0 ? 0 : totalNanos / NANOS_PER_MILLI / items;
+    }
+
+    /**
+     * Retrieves the longest time the stage spent processing a single image.
+     *
+     * @return The maximal latency in milliseconds.
+     */
+    public double getMaxLatencyMillis() {
+        return maxNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Retrieves the average depth of the input queue of the stage.
+     *
+     * @return The average number of images waiting for the stage, 0 if never sampled.
+     */
+    public double getAverageQueueDepth() {
+        return depthSamples == 0 ? 0 : (double) depthSum / depthSamples;
+    }
+
+    /**
+     * Retrieves the maximal depth of the input queue of the stage.
+     *
+     * @return The maximal number of images waiting for the stage.
+     */
+    public int getMaxQueueDepth() {
+        return maxDepth;
+    }
+}
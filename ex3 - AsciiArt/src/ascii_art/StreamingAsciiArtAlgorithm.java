@@ -0,0 +1,186 @@
+package ascii_art;
+
+import image.ImageDecoder;
+import image.ImageManipulator;
+import image_char_matching.SubImgCharMatcher;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A streaming variant of AsciiArtAlgorithm for images which are too large to be held in memory. The image
+ * file is never decoded as a whole: it is read in horizontal bands of exactly one row of segments, through
+ * the source regions of an ImageReader, & every band is reduced to the brightness of its segments & then
+ * discarded. The peak memory is therefore O(image width x segment edge), regardless of the image height; a
+ * band of more than MAX_STRIP_PIXELS pixels (at the lowest resolutions of very wide images) is read in
+ * strips of fewer rows, so it never has to fit in a single array.
+ * The image is padded virtually, exactly like ImageManipulator.padImage pads it, so the result matches the
+ * result of AsciiArtAlgorithm for the same image (in either brightness mode). The segments are matched by
+ * their brightness only, since matching their shapes would need the pixels of every segment at once.
+ */
+public class StreamingAsciiArtAlgorithm {
+
+    private static final String START_MESSAGE_INVALID_RESOLUTION = "Invalid resolution: ";
+
+    /**
+     * The index of the (first) image within an image file.
+     */
+    private static final int IMAGE_INDEX = 0;
+
+    /**
+     * The largest number of pixels read from the file at once, unless a single row of the image is longer.
+     */
+    private static final int MAX_STRIP_PIXELS = 1 << 22;
+
+    /**
+     * The fixed-point grayscale value of a white padding pixel.
+     */
+    private static final long WHITE_GRAY = ImageManipulator.RGB2GrayFixed(Color.WHITE.getRGB());
+
+    /**
+     * The fixed-point linear-light grayscale value of a white padding pixel.
+     */
+    private static final long WHITE_LINEAR_GRAY = ImageManipulator.RGB2LinearGrayFixed(Color.WHITE.getRGB());
+
+    private String filename;
+    private int resolution;
+    private SubImgCharMatcher subImgCharMatcher;
+    private boolean linearLight;
+
+    /**
+     * Constructs an instance of the StreamingAsciiArtAlgorithm for an image file.
+     *
+     * @param filename          The path to the image file to be converted into ASCII art.
+     * @param resolution        The resolution to be used for the ASCII art.
+     * @param subImgCharMatcher The SubImgCharMatcher instance responsible for matching image brightness
+     *                          levels to characters.
+     */
+    public StreamingAsciiArtAlgorithm(String filename, int resolution, SubImgCharMatcher subImgCharMatcher) {
+        this(filename, resolution, subImgCharMatcher, false);
+    }
+
+    /**
+     * Constructs an instance of the StreamingAsciiArtAlgorithm for an image file, in either brightness mode.
+     *
+     * @param filename          The path to the image file to be converted into ASCII art.
+     * @param resolution        The resolution to be used for the ASCII art.
+     * @param subImgCharMatcher The SubImgCharMatcher instance responsible for matching image brightness
+     *                          levels to characters.
+     * @param linearLight       Whether to average the brightness of segments in linear light.
+     */
+    public StreamingAsciiArtAlgorithm(String filename, int resolution, SubImgCharMatcher subImgCharMatcher,
+                                      boolean linearLight) {
+        this.filename = filename;
+        this.resolution = resolution;
+        this.subImgCharMatcher = subImgCharMatcher;
+        this.linearLight = linearLight;
+    }
+
+    /**
+     * Executes the algorithm, streaming the image file one row of segments at a time.
+     *
+     * @return A 2D character array representing the ASCII art generated from the image.
+     * @throws IOException              If the image file can't be read.
+     * @throws IllegalArgumentException If the resolution is not valid for the padded image.
+     */
+    public char[][] run() throws IOException, IllegalArgumentException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+            ImageReader reader = ImageDecoder.getReader(input, filename);
+            try {
+                return run(reader);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Converts the image of the given reader, one row of segments at a time.
+     *
+     * @param reader The reader of the image file.
+     * @return A 2D character array representing the ASCII art generated from the image.
+     * @throws IOException If the image file can't be read.
+     */
+    private char[][] run(ImageReader reader) throws IOException {
+        int width = reader.getWidth(IMAGE_INDEX);
+        int height = reader.getHeight(IMAGE_INDEX);
+        int paddedWidth = ImageManipulator.nearestPowerOfTwo(width);
+        int paddedHeight = ImageManipulator.nearestPowerOfTwo(height);
+        if (!ImageManipulator.isValidResolution(paddedWidth, paddedHeight, resolution)) {
+            throw new IllegalArgumentException(START_MESSAGE_INVALID_RESOLUTION + resolution);
+        }
+        int padTop = (paddedHeight - height) / 2;
+        int padLeft = (paddedWidth - width) / 2;
+
+        int squareEdge = paddedWidth / resolution;
+        char[][] art = new char[paddedHeight / squareEdge][resolution];
+        long[] segmentSums = new long[resolution];
+        long whiteGray = linearLight ? WHITE_LINEAR_GRAY : WHITE_GRAY;
+        // the pixels of a segment are counted in longs, since a segment may have 2^32 pixels or more.
+        long segmentPixels = (long) squareEdge * squareEdge;
+        int stripHeight = Math.max(1, Math.min(squareEdge, MAX_STRIP_PIXELS / width));
+        ImageReadParam param = reader.getDefaultReadParam();
+
+        for (int row = 0; row < art.length; row++) {
+            Arrays.fill(segmentSums, 0);
+            // the rows of the file covered by this row of segments, the rest of the segments is padding.
+            int firstRow = Math.max(0, row * squareEdge - padTop);
+            int lastRow = Math.min(height, (row + 1) * squareEdge - padTop);
+            int bandHeight = Math.max(0, lastRow - firstRow);
+            for (int stripTop = firstRow; stripTop < lastRow; stripTop += stripHeight) {
+                int rows = Math.min(stripHeight, lastRow - stripTop);
+                param.setSourceRegion(new Rectangle(0, stripTop, width, rows));
+                int[] strip = ImageDecoder.toPackedPixels(reader.read(IMAGE_INDEX, param));
+                ImageManipulator.RGB2GrayFixed(strip, strip, strip.length, linearLight);
+                reduceBand(strip, width, rows, padLeft, squareEdge, segmentSums);
+            }
+
+            for (int col = 0; col < resolution; col++) {
+                int firstColumn = Math.max(0, col * squareEdge - padLeft);
+                int lastColumn = Math.min(width, (col + 1) * squareEdge - padLeft);
+                long imagePixels = (long) bandHeight * Math.max(0, lastColumn - firstColumn);
+                long paddingPixels = segmentPixels - imagePixels;
+                double brightness = (segmentSums[col] + paddingPixels * whiteGray) /
+                        ((double) ImageManipulator.GRAY_SCALE * ImageManipulator.MAX_GRAYSCALE_INTENSITY *
+                                segmentPixels);
+                if (linearLight) {
+                    brightness = ImageManipulator.linearToSrgb(brightness);
+                }
+                art[row][col] = subImgCharMatcher.getCharByImageBrightness(brightness);
+            }
+        }
+        return art;
+    }
+
+    /**
+     * Adds the fixed-point grayscale values of the pixels of a band (or a strip of a band) to the sums of the
+     * segments they belong to, summing the run of every segment within every row in bulk.
+     *
+     * @param band        The fixed-point grayscale values of the band, row after row.
+     * @param width       The width of the band in pixels.
+     * @param bandHeight  The height of the band in pixels.
+     * @param padLeft     The number of padding pixels to the left of the image.
+     * @param squareEdge  The length of the edges of every segment in pixels.
+     * @param segmentSums The sums of the fixed-point grayscale values of the segments of the band.
+     */
+    private static void reduceBand(int[] band, int width, int bandHeight, int padLeft, int squareEdge,
+                                   long[] segmentSums) {
+        for (int row = 0; row < bandHeight; row++) {
+            int offset = row * width;
+            for (int segment = 0; segment < segmentSums.length; segment++) {
+                int firstColumn = Math.max(0, segment * squareEdge - padLeft);
+                int lastColumn = Math.min(width, (segment + 1) * squareEdge - padLeft);
+                if (firstColumn < lastColumn) {
+                    segmentSums[segment] += ImageManipulator.sumGrayFixed(band, offset + firstColumn,
+                            offset + lastColumn);
+                }
+            }
+        }
+    }
+}
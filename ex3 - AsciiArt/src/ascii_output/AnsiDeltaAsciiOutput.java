@@ -0,0 +1,411 @@
+package ascii_output;
+
+import java.awt.Dimension;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+
+/**
+ * Output a 2D array of chars to an ANSI terminal, sending only what changed since the previous frame.
+ * A frame which fits on the terminal is drawn at the top of the alternate screen, & the lines below it are
+ * made the scrolling region, so the prompts & messages printed between frames scroll below the frame &
+ * never move it. Every following frame of the same dimensions is then compared with the last frame drawn, &
+ * only the runs of changed cells are sent, each preceded by an ANSI cursor-positioning escape, between
+ * saving & restoring the cursor of the prompts. When the delta would be longer than the frame itself, or the
+ * terminal was resized, the whole frame is repainted instead. This keeps re-rendering the same image after a
+ * small change cheap over a slow link.
+ * The size of the terminal is read (by "stty size" on the controlling terminal, or from the LINES & COLUMNS
+ * environment variables) before every frame; a frame too large for the terminal, or any frame when its size
+ * is unknown, is printed whole in the normal screen like a console frame. Every cell is assumed to take a
+ * single column, which holds for the characters the matcher accepts. Closing the output (or exiting the
+ * process) restores the scrolling region & the normal screen.
+ */
+public class AnsiDeltaAsciiOutput extends ConsoleAsciiOutput implements AutoCloseable {
+
+    /**
+     * The escape character starting every ANSI escape.
+     */
+    private static final String ESC = "\u001B";
+
+    /**
+     * The Control Sequence Introducer starting most ANSI escapes.
+     */
+    private static final String CSI = ESC + "[";
+
+    /**
+     * Switches to the alternate screen, saving the normal screen.
+     */
+    private static final String ENTER_ALTERNATE_SCREEN = CSI + "?1049h";
+
+    /**
+     * Switches back to the normal screen, restoring it.
+     */
+    private static final String LEAVE_ALTERNATE_SCREEN = CSI + "?1049l";
+
+    /**
+     * Makes the whole screen the scrolling region again.
+     */
+    private static final String RESET_SCROLLING_REGION = CSI + "r";
+
+    /**
+     * Moves the cursor to the top left corner & clears the whole screen.
+     */
+    private static final String CLEAR_SCREEN = CSI + "H" + CSI + "2J";
+
+    /**
+     * Saves the position of the cursor.
+     */
+    private static final String SAVE_CURSOR = ESC + "7";
+
+    /**
+     * Restores the position of the cursor saved last.
+     */
+    private static final String RESTORE_CURSOR = ESC + "8";
+
+    /**
+     * The separator between the two parameters of a cursor-positioning or scrolling region escape.
+     */
+    private static final char PARAMETER_SEPARATOR = ';';
+
+    /**
+     * The final character of a cursor-positioning escape.
+     */
+    private static final char POSITION_END = 'H';
+
+    /**
+     * The final character of a scrolling region escape.
+     */
+    private static final char SCROLLING_REGION_END = 'r';
+
+    /**
+     * The number of screen columns of every cell: the character & its separator.
+     */
+    private static final int CELL_WIDTH = 1 + CELL_SEPARATOR.length();
+
+    /**
+     * The minimal number of lines below a frame, for the scrolling region of the prompts (a scrolling region
+     * spans at least two lines).
+     */
+    private static final int PROMPT_LINES = 2;
+
+    /**
+     * The command printing the size of the terminal connected to its standard input, as "rows columns".
+     */
+    private static final String[] TERMINAL_SIZE_COMMAND = {"stty", "size"};
+
+    /**
+     * The controlling terminal of the process, whose size is read.
+     */
+    private static final String TERMINAL_DEVICE = "/dev/tty";
+
+    /**
+     * The separator between the rows & the columns printed by TERMINAL_SIZE_COMMAND.
+     */
+    private static final String TERMINAL_SIZE_SEPARATOR = "\\s+";
+
+    /**
+     * The environment variable holding the height of the terminal, when the shell exports it.
+     */
+    private static final String TERMINAL_ROWS_VARIABLE = "LINES";
+
+    /**
+     * The environment variable holding the width of the terminal, when the shell exports it.
+     */
+    private static final String TERMINAL_COLUMNS_VARIABLE = "COLUMNS";
+
+    /**
+     * The size of the terminal, in columns & rows, or null to read it before every frame.
+     */
+    private final Dimension fixedTerminalSize;
+
+    /**
+     * The last frame printed, or null if nothing was printed yet.
+     */
+    private char[][] lastFrame;
+
+    /**
+     * The size of the terminal when the last frame was repainted on the alternate screen, or null if the
+     * output isn't on the alternate screen.
+     */
+    private Dimension paintedTerminalSize;
+
+    /**
+     * Restores the normal screen if the process exits while the output is on the alternate screen.
+     */
+    private Thread restoreHook;
+
+    /**
+     * Constructs an ANSI delta output writing through System.out.
+     */
+    public AnsiDeltaAsciiOutput() {
+        this(false);
+    }
+
+    /**
+     * Constructs an ANSI delta output, reading the size of the terminal before every frame.
+     *
+     * @param raw Whether to write directly to the channel of FileDescriptor.out rather than through
+     *            System.out.
+     */
+    public AnsiDeltaAsciiOutput(boolean raw) {
+        this(raw, null);
+    }
+
+    /**
+     * Constructs an ANSI delta output for a terminal of a known size.
+     *
+     * @param raw          Whether to write directly to the channel of FileDescriptor.out rather than through
+     *                     System.out.
+     * @param terminalSize The size of the terminal, in columns (width) & rows (height), or null to read it
+     *                     before every frame.
+     */
+    public AnsiDeltaAsciiOutput(boolean raw, Dimension terminalSize) {
+        super(raw);
+        fixedTerminalSize = terminalSize;
+    }
+
+    @Override
+    public void out(char[][] chars) {
+        Dimension terminalSize = fixedTerminalSize != null ? fixedTerminalSize : readTerminalSize();
+        StringBuilder text = getFrameBuffer();
+        if (!fits(chars, terminalSize)) {
+            leaveAlternateScreen(text);
+            appendFrame(text, chars);
+        } else if (!terminalSize.equals(paintedTerminalSize) || !isSameShape(chars) ||
+                !appendDelta(text, chars)) {
+            text.setLength(0);
+            appendRepaint(text, chars, terminalSize);
+        }
+        write(text);
+        remember(chars);
+    }
+
+    /**
+     * Restores the scrolling region & the normal screen, if the output is on the alternate screen. The next
+     * frame (if any) is repainted whole.
+     */
+    @Override
+    public void close() {
+        StringBuilder text = getFrameBuffer();
+        leaveAlternateScreen(text);
+        if (text.length() > 0) {
+            write(text);
+        }
+    }
+
+    /**
+     * Checks whether a frame fits on the terminal, leaving PROMPT_LINES lines below it.
+     *
+     * @param chars        The frame.
+     * @param terminalSize The size of the terminal, or null if it is unknown.
+     * @return true if the frame fits, false otherwise.
+     */
+    private static boolean fits(char[][] chars, Dimension terminalSize) {
+        if (terminalSize == null || chars.length == 0 || chars.length + PROMPT_LINES > terminalSize.height) {
+            return false;
+        }
+        for (char[] row : chars) {
+            if (row.length * CELL_WIDTH > terminalSize.width) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a whole frame repainted at the top of the alternate screen (switching to it if needed),
+     * followed by making the lines below it the scrolling region & moving the cursor to its first line.
+     *
+     * @param text         The empty buffer to append to.
+     * @param chars        The frame, which fits on the terminal.
+     * @param terminalSize The size of the terminal.
+     */
+    private void appendRepaint(StringBuilder text, char[][] chars, Dimension terminalSize) {
+        if (paintedTerminalSize == null) {
+            text.append(ENTER_ALTERNATE_SCREEN);
+            restoreHook = new Thread(this::close);
+            Runtime.getRuntime().addShutdownHook(restoreHook);
+        }
+        text.append(RESET_SCROLLING_REGION).append(CLEAR_SCREEN);
+        appendFrame(text, chars);
+        // setting the scrolling region moves the cursor to the top left corner.
+        text.append(CSI).append(chars.length + 1).append(PARAMETER_SEPARATOR).append(terminalSize.height)
+                .append(SCROLLING_REGION_END);
+        appendPosition(text, chars.length, 0);
+        paintedTerminalSize = terminalSize;
+    }
+
+    /**
+     * Appends the escapes restoring the scrolling region & the normal screen, if the output is on the
+     * alternate screen.
+     *
+     * @param text The buffer to append to.
+     */
+    private void leaveAlternateScreen(StringBuilder text) {
+        if (paintedTerminalSize == null) {
+            return;
+        }
+        text.append(RESET_SCROLLING_REGION).append(LEAVE_ALTERNATE_SCREEN);
+        paintedTerminalSize = null;
+        if (restoreHook != Thread.currentThread()) {
+            Runtime.getRuntime().removeShutdownHook(restoreHook);
+        }
+        restoreHook = null;
+    }
+
+    /**
+     * Appends the delta from the last frame to a buffer: every run of changed cells positioned by an escape,
+     * between saving & restoring the cursor. Gives up as soon as the delta is longer than the frame.
+     *
+     * @param text  The empty buffer to append to.
+     * @param chars The new frame, of the same dimensions as the last one.
+     * @return true if the delta was appended, false if a full repaint is shorter.
+     */
+    private boolean appendDelta(StringBuilder text, char[][] chars) {
+        int frameLength = chars.length * (chars[0].length * CELL_WIDTH + LINE_SEPARATOR.length());
+        text.append(SAVE_CURSOR);
+        for (int y = 0; y < chars.length; y++) {
+            char[] row = chars[y];
+            char[] lastRow = lastFrame[y];
+            int x = 0;
+            while (x < row.length) {
+                if (row[x] == lastRow[x]) {
+                    x++;
+                } else {
+                    appendPosition(text, y, x);
+                    while (x < row.length && row[x] != lastRow[x]) {
+                        text.append(row[x]).append(CELL_SEPARATOR);
+                        x++;
+                    }
+                    if (text.length() > frameLength) {
+                        return false;
+                    }
+                }
+            }
+        }
+        text.append(RESTORE_CURSOR);
+        return true;
+    }
+
+    /**
+     * Appends an escape moving the cursor to a cell (ANSI positions are 1-based).
+     *
+     * @param text The buffer to append to.
+     * @param y    The row of the cell.
+     * @param x    The column of the cell.
+     */
+    private static void appendPosition(StringBuilder text, int y, int x) {
+        text.append(CSI).append(y + 1).append(PARAMETER_SEPARATOR).append(x * CELL_WIDTH + 1)
+                .append(POSITION_END);
+    }
+
+    /**
+     * Reads the size of the terminal, by "stty size" on the controlling terminal, or else from the LINES &
+     * COLUMNS environment variables.
+     *
+     * @return The size of the terminal, in columns & rows, or null if it is unknown.
+     */
+    private static Dimension readTerminalSize() {
+        Dimension size = readControllingTerminalSize();
+        if (size != null) {
+            return size;
+        }
+        return toSize(parseDimension(System.getenv(TERMINAL_COLUMNS_VARIABLE)),
+                parseDimension(System.getenv(TERMINAL_ROWS_VARIABLE)));
+    }
+
+    /**
+     * Reads the size of the controlling terminal of the process by "stty size".
+     *
+     * @return The size of the terminal, in columns & rows, or null if there is no controlling terminal (or
+     * no stty).
+     */
+    private static Dimension readControllingTerminalSize() {
+        try {
+            Process process = new ProcessBuilder(TERMINAL_SIZE_COMMAND)
+                    .redirectInput(new File(TERMINAL_DEVICE))
+                    .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+            String line;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                    Charset.defaultCharset()))) {
+                line = reader.readLine();
+            }
+            if (process.waitFor() != 0 || line == null) {
+                return null;
+            }
+            String[] size = line.strip().split(TERMINAL_SIZE_SEPARATOR);
+            return size.length == 2 ? toSize(parseDimension(size[1]), parseDimension(size[0])) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    /**
+     * Parses a dimension of the terminal.
+     *
+     * @param value The dimension, or null if it isn't known.
+     * @return The dimension, or 0 if it isn't a number.
+     */
+    private static int parseDimension(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Integer.parseInt(value.strip());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Builds the size of a terminal, if it is valid.
+     *
+     * @param columns The width of the terminal in columns.
+     * @param rows    The height of the terminal in rows.
+     * @return The size, or null if either dimension isn't positive.
+     */
+    private static Dimension toSize(int columns, int rows) {
+        return columns > 0 && rows > 0 ? new Dimension(columns, rows) : null;
+    }
+
+    /**
+     * Checks whether a frame has the dimensions of the last frame printed.
+     *
+     * @param chars The new frame.
+     * @return true if a last frame of the same dimensions exists, false otherwise.
+     */
+    private boolean isSameShape(char[][] chars) {
+        if (lastFrame == null || lastFrame.length != chars.length || chars.length == 0) {
+            return false;
+        }
+        for (int y = 0; y < chars.length; y++) {
+            if (lastFrame[y].length != chars[y].length) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a printed frame as the last frame, reusing the arrays of the previous one when the dimensions
+     * didn't change (the frame itself may be a cached result, which must not be kept & modified).
+     *
+     * @param chars The frame which was printed.
+     */
+    private void remember(char[][] chars) {
+        if (!isSameShape(chars)) {
+            lastFrame = new char[chars.length][];
+            for (int y = 0; y < chars.length; y++) {
+                lastFrame[y] = new char[chars[y].length];
+            }
+        }
+        for (int y = 0; y < chars.length; y++) {
+            System.arraycopy(chars[y], 0, lastFrame[y], 0, chars[y].length);
+        }
+    }
+}
@@ -1,18 +1,192 @@
 package ascii_output;
 
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.logging.Logger;
+
 /**
  * Output a 2D array of chars to the console.
+ * The whole frame is assembled in a reusable buffer, encoded into a reusable byte buffer in the charset of
+ * the standard output (see stdoutCharset) & written at once, rather than printing every character through the
+ * synchronized System.out, so a large frame costs a single write of its bytes instead of thousands of
+ * writes, isn't copied into a String or re-encoded in chunks by System.out, & isn't torn by other output.
+ * Optionally the frame is written directly to the channel of the standard output file descriptor,
+ * bypassing System.out entirely. An instance reuses its buffers, so it must not be used by several threads
+ * at the same time.
  *
  * @author Dan Nirel
  */
 public class ConsoleAsciiOutput implements AsciiOutput {
+    static final String CELL_SEPARATOR = " ";
+    static final String LINE_SEPARATOR = System.lineSeparator();
+
+    /**
+     * The system properties naming the encoding of the standard output, in the order they are tried:
+     * "stdout.encoding" (set since Java 18) & "sun.stdout.encoding" (set by older JDKs when the standard
+     * output is a console).
+     */
+    private static final String[] STDOUT_ENCODING_PROPERTIES = {"stdout.encoding", "sun.stdout.encoding"};
+
+    /**
+     * The channel of the standard output file descriptor, shared by all the raw outputs & never closed.
+     */
+    private static FileChannel rawChannel;
+
+    /**
+     * Whether frames are written to the raw standard output channel rather than through System.out.
+     */
+    private final boolean raw;
+
+    /**
+     * The buffer the frame is assembled in, reused by every call to out.
+     */
+    private final StringBuilder frame;
+
+    /**
+     * The encoder of the frames, in the charset of the standard output.
+     */
+    private CharsetEncoder encoder;
+
+    /**
+     * The buffer of the encoded frame, grown as needed & reused.
+     */
+    private ByteBuffer bytes;
+
+    /**
+     * Constructs a console output writing through System.out.
+     */
+    public ConsoleAsciiOutput() {
+        this(false);
+    }
+
+    /**
+     * Constructs a console output.
+     *
+     * @param raw Whether to write the frames directly to the channel of FileDescriptor.out rather than
+     *            through System.out (which is flushed first, so earlier output still comes first).
+     */
+    public ConsoleAsciiOutput(boolean raw) {
+        this.raw = raw;
+        frame = new StringBuilder();
+    }
+
     @Override
     public void out(char[][] chars) {
+        StringBuilder text = getFrameBuffer();
+        appendFrame(text, chars);
+        write(text);
+    }
+
+    /**
+     * Retrieves the reusable buffer frames are assembled in, emptied.
+     *
+     * @return The empty frame buffer.
+     */
+    StringBuilder getFrameBuffer() {
+        frame.setLength(0);
+        return frame;
+    }
+
+    /**
+     * Appends a whole frame to a buffer: every character followed by CELL_SEPARATOR, & every row followed
+     * by LINE_SEPARATOR.
+     *
+     * @param text  The buffer to append to.
+     * @param chars The frame.
+     */
+    static void appendFrame(StringBuilder text, char[][] chars) {
         for (int y = 0; y < chars.length; y++) {
             for (int x = 0; x < chars[y].length; x++) {
-                System.out.print(chars[y][x] + " ");
+                text.append(chars[y][x]).append(CELL_SEPARATOR);
             }
-            System.out.println();
+            text.append(LINE_SEPARATOR);
+        }
+    }
+
+    /**
+     * Writes a whole frame to the console in a single write of its encoded bytes.
+     *
+     * @param text The frame to write.
+     */
+    void write(CharSequence text) {
+        encode(text);
+        if (!raw) {
+            System.out.write(bytes.array(), bytes.position(), bytes.remaining());
+            System.out.flush();
+            return;
+        }
+        System.out.flush();
+        try {
+            FileChannel channel = getRawChannel();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } catch (IOException e) {
+            Logger.getGlobal().severe("Failed to write to the console");
+        }
+    }
+
+    /**
+     * Encodes a frame into the reusable byte buffer, replacing the characters the charset can't encode like
+     * System.out does, & flips the buffer for reading.
+     *
+     * @param text The frame to encode.
+     */
+    private void encode(CharSequence text) {
+        if (encoder == null) {
+            encoder = stdoutCharset().newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        int maxBytes = (int) Math.ceil(text.length() * (double) encoder.maxBytesPerChar());
+        if (bytes == null || bytes.capacity() < maxBytes) {
+            bytes = ByteBuffer.allocate(maxBytes);
+        }
+        bytes.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(text), bytes, true);
+        encoder.flush(bytes);
+        bytes.flip();
+    }
+
+    /**
+     * Finds the charset of the standard output: the encoding named by the first of STDOUT_ENCODING_PROPERTIES
+     * which is set to a supported charset, or the default charset otherwise. The default charset alone isn't
+     * necessarily the charset of System.out: on a Windows console, for instance, System.out encodes in the
+     * code page of the console, & since Java 18 the default charset is UTF-8 everywhere.
+     *
+     * @return The charset of the standard output.
+     */
+    static Charset stdoutCharset() {
+        for (String property : STDOUT_ENCODING_PROPERTIES) {
+            String name = System.getProperty(property);
+            if (name == null) {
+                continue;
+            }
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                Logger.getGlobal().warning("Unsupported encoding of the standard output: " + name);
+            }
+        }
+        return Charset.defaultCharset();
+    }
+
+    /**
+     * Retrieves the channel of the standard output file descriptor, opening it on first use.
+     *
+     * @return The channel of FileDescriptor.out.
+     */
+    private static synchronized FileChannel getRawChannel() {
+        if (rawChannel == null) {
+            rawChannel = new FileOutputStream(FileDescriptor.out).getChannel();
         }
+        return rawChannel;
     }
 }
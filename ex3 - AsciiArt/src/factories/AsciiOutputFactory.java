@@ -1,6 +1,7 @@
 package factories;
 
 
+import ascii_output.AnsiDeltaAsciiOutput;
 import ascii_output.AsciiOutput;
 import ascii_output.ConsoleAsciiOutput;
 import ascii_output.HtmlAsciiOutput;
@@ -30,6 +31,11 @@ public class AsciiOutputFactory {
      */
     public static final String CONSOLE = "console";
 
+    /**
+     * Constant representing the ANSI console output type, which prints only the changes between frames.
+     */
+    public static final String ANSI = "ansi";
+
     /**
      * Font name used for generating ASCII output.
      */
@@ -60,10 +66,10 @@ public class AsciiOutputFactory {
 
     /**
      * Builds and returns an ASCII output generator based on the specified type.
-     * Currently supports HTML and console output types.
+     * Currently supports HTML, console and ANSI console output types.
      *
-     * @param name The type of ASCII output generator to build. Use "html" for HTML output and "console"
-     *             for console output.
+     * @param name The type of ASCII output generator to build. Use "html" for HTML output, "console"
+     *             for console output and "ansi" for console output printing only the changes between frames.
      * @return An instance of AsciiOutput corresponding to the specified type, or null if the type is not
      * recognized.
      */
@@ -73,9 +79,24 @@ public class AsciiOutputFactory {
                 return new HtmlAsciiOutput(filename, fontName);
             case CONSOLE:
                 return new ConsoleAsciiOutput();
+            case ANSI:
+                return new AnsiDeltaAsciiOutput();
             default:
                 return null;
         }
     }
 
+    /**
+     * Builds and returns an ASCII output generator of the specified type, writing to the given file instead
+     * of the filename of the factory. Used when every result of a batch is written to its own file.
+     *
+     * @param name     The type of ASCII output generator to build ("html" or "console").
+     * @param filename The filename for the output, used when generating HTML ASCII art.
+     * @return An instance of AsciiOutput corresponding to the specified type, or null if the type is not
+     * recognized.
+     */
+    public AsciiOutput build(String name, String filename) {
+        return new AsciiOutputFactory(filename, fontName).build(name);
+    }
+
 }
@@ -0,0 +1,197 @@
+package image;
+
+/**
+ * A mipmap-style pyramid of the grayscale values of an image whose dimensions are powers of two (such as a
+ * padded image). Level k holds the average grayscale value of every aligned 2^k x 2^k square of the image,
+ * and is derived from level k - 1 by averaging every 2x2 block of it. The whole pyramid costs a single pass
+ * over the pixels, after which the brightness of every segment of any power of two edge is a single array
+ * read, so changing the resolution never scans the image again. In linear-light mode the levels average
+ * linear-light grayscale values, & the brightness of every segment is encoded back to sRGB once.
+ */
+public class BrightnessPyramid implements BrightnessSource {
+
+    /**
+     * The number of cells of a level that are averaged into a single cell of the next level.
+     */
+    private static final double CELLS_PER_BLOCK = 4;
+
+    /**
+     * The divisor turning the sum of the fixed-point grayscale values of a 2x2 block of pixels into their
+     * average grayscale value.
+     */
+    private static final double FIXED_BLOCK_DIVISOR = CELLS_PER_BLOCK * ImageManipulator.GRAY_SCALE;
+
+    private static final String ERROR_MESSAGE_NOT_POWER_OF_TWO = "Image dimensions must be powers of two.";
+    private static final String ERROR_MESSAGE_UNALIGNED_SQUARE = "Square is not aligned to the pyramid: ";
+    private static final String ERROR_MESSAGE_NOT_SQUARE = "The pyramid holds square segments only.";
+
+    /**
+     * The image the pyramid was built from, used for answering the brightness of single pixels (level 0).
+     */
+    private final Image image;
+
+    /**
+     * The levels of the pyramid, where levels[k] holds the average grayscale values of the 2^k x 2^k
+     * squares of the image, row after row. Level 0 isn't stored, since it is the image itself.
+     */
+    private final double[][] levels;
+
+    /**
+     * Whether the levels average linear-light grayscale values rather than gamma-encoded ones.
+     */
+    private final boolean linearLight;
+
+    /**
+     * Builds the pyramid of the given image.
+     *
+     * @param image The image to build the pyramid for. Its width & height must be powers of two.
+     * @throws IllegalArgumentException If the dimensions of the image aren't powers of two.
+     */
+    public BrightnessPyramid(Image image) throws IllegalArgumentException {
+        this(image, false);
+    }
+
+    /**
+     * Builds the pyramid of the given image, of either gamma-encoded or linear-light grayscale values.
+     *
+     * @param image       The image to build the pyramid for. Its width & height must be powers of two.
+     * @param linearLight Whether to average the brightness of segments in linear light.
+     * @throws IllegalArgumentException If the dimensions of the image aren't powers of two.
+     */
+    public BrightnessPyramid(Image image, boolean linearLight) throws IllegalArgumentException {
+        if (Integer.bitCount(image.getWidth()) != 1 || Integer.bitCount(image.getHeight()) != 1) {
+            throw new IllegalArgumentException(ERROR_MESSAGE_NOT_POWER_OF_TWO);
+        }
+        this.image = image;
+        this.linearLight = linearLight;
+        int depth = Integer.numberOfTrailingZeros(Math.min(image.getWidth(), image.getHeight()));
+        levels = new double[depth + 1][];
+        if (depth > 0) {
+            levels[1] = buildFirstLevel(image, linearLight);
+        }
+        for (int level = 2; level <= depth; level++) {
+            levels[level] = buildLevel(levels[level - 1], image.getWidth() >> (level - 1),
+                    image.getHeight() >> (level - 1));
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return image.getWidth();
+    }
+
+    @Override
+    public int getHeight() {
+        return image.getHeight();
+    }
+
+    /**
+     * Retrieves the average brightness of a square segment of the image from the matching level of the
+     * pyramid.
+     *
+     * @param topRow     The row index of the top-left corner of the square, a multiple of squareEdge.
+     * @param leftColumn The column index of the top-left corner of the square, a multiple of squareEdge.
+     * @param squareEdge The length of the edges of the square, a power of two.
+     * @return The brightness of the square, normalized between 0 and 1.
+     * @throws IllegalArgumentException If the square isn't one of the squares of the pyramid.
+     */
+    @Override
+    public double getSquareBrightness(int topRow, int leftColumn, int squareEdge)
+            throws IllegalArgumentException {
+        int level = Integer.numberOfTrailingZeros(squareEdge);
+        if (Integer.bitCount(squareEdge) != 1 || level >= levels.length ||
+                topRow % squareEdge != 0 || leftColumn % squareEdge != 0) {
+            throw new IllegalArgumentException(ERROR_MESSAGE_UNALIGNED_SQUARE + squareEdge);
+        }
+        double average;
+        if (level == 0) {
+            int rgb = image.getRGB(topRow, leftColumn);
+            int gray = linearLight ? ImageManipulator.RGB2LinearGrayFixed(rgb) :
+                    ImageManipulator.RGB2GrayFixed(rgb);
+            average = gray / ((double) ImageManipulator.GRAY_SCALE *
+                    ImageManipulator.MAX_GRAYSCALE_INTENSITY);
+        } else {
+            int levelWidth = image.getWidth() >> level;
+            average = levels[level][(topRow >> level) * levelWidth + (leftColumn >> level)] /
+                    ImageManipulator.MAX_GRAYSCALE_INTENSITY;
+        }
+        return linearLight ? ImageManipulator.linearToSrgb(average) : average;
+    }
+
+    /**
+     * Retrieves the average brightness of a segment of the image, which must be one of the squares of the
+     * pyramid.
+     *
+     * @param topRow       The row index of the top-left corner of the segment.
+     * @param leftColumn   The column index of the top-left corner of the segment.
+     * @param regionHeight The height of the segment in pixels.
+     * @param regionWidth  The width of the segment in pixels.
+     * @return The brightness of the segment, normalized between 0 and 1.
+     * @throws IllegalArgumentException If the segment isn't one of the squares of the pyramid.
+     */
+    @Override
+    public double getAverageBrightness(int topRow, int leftColumn, int regionHeight, int regionWidth)
+            throws IllegalArgumentException {
+        if (regionHeight != regionWidth) {
+            throw new IllegalArgumentException(ERROR_MESSAGE_NOT_SQUARE);
+        }
+        return getSquareBrightness(topRow, leftColumn, regionWidth);
+    }
+
+    /**
+     * Builds the first level of the pyramid directly from the pixels of the image, averaging the grayscale
+     * values of every 2x2 block of pixels. Both rows of the blocks are converted to grayscale & summed
+     * vertically in bulk before the horizontal pairs are summed. The fixed-point values of a block are summed
+     * exactly as ints, & the average (a multiple of 2^-18) is exact as a double, as are all the averages of
+     * the levels above.
+     *
+     * @param image       The image to build the level from.
+     * @param linearLight Whether to average linear-light grayscale values.
+     * @return The average grayscale values of the 2x2 blocks of the image, row after row.
+     */
+    private static double[] buildFirstLevel(Image image, boolean linearLight) {
+        int levelWidth = image.getWidth() / 2;
+        int levelHeight = image.getHeight() / 2;
+        double[] level = new double[levelWidth * levelHeight];
+        int[] upperRow = new int[image.getWidth()];
+        int[] lowerRow = new int[image.getWidth()];
+
+        for (int row = 0; row < levelHeight; row++) {
+            image.copyRow(2 * row, upperRow);
+            image.copyRow(2 * row + 1, lowerRow);
+            ImageManipulator.RGB2GrayFixed(upperRow, upperRow, upperRow.length, linearLight);
+            ImageManipulator.RGB2GrayFixed(lowerRow, lowerRow, lowerRow.length, linearLight);
+            ImageManipulator.addRow(upperRow, lowerRow, upperRow.length);
+            for (int col = 0; col < levelWidth; col++) {
+                level[row * levelWidth + col] = (upperRow[2 * col] + upperRow[2 * col + 1]) /
+                        FIXED_BLOCK_DIVISOR;
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Builds a level of the pyramid from the level above it, averaging every 2x2 block of cells.
+     *
+     * @param upper       The level above the built level.
+     * @param upperWidth  The width of the level above, in cells.
+     * @param upperHeight The height of the level above, in cells.
+     * @return The average values of the 2x2 blocks of the level above, row after row.
+     */
+    private static double[] buildLevel(double[] upper, int upperWidth, int upperHeight) {
+        int levelWidth = upperWidth / 2;
+        int levelHeight = upperHeight / 2;
+        double[] level = new double[levelWidth * levelHeight];
+
+        for (int row = 0; row < levelHeight; row++) {
+            int upperIndex = 2 * row * upperWidth;
+            int lowerIndex = upperIndex + upperWidth;
+            for (int col = 0; col < levelWidth; col++) {
+                level[row * levelWidth + col] = (upper[upperIndex + 2 * col] +
+                        upper[upperIndex + 2 * col + 1] + upper[lowerIndex + 2 * col] +
+                        upper[lowerIndex + 2 * col + 1]) / CELLS_PER_BLOCK;
+            }
+        }
+        return level;
+    }
+}
@@ -0,0 +1,45 @@
+package image;
+
+/**
+ * An object implementing this interface can answer the average brightness of segments of an image, without
+ * the segments being copied out of the image.
+ */
+public interface BrightnessSource {
+
+    /**
+     * Retrieves the width of the image in pixels.
+     *
+     * @return The width of the image.
+     */
+    int getWidth();
+
+    /**
+     * Retrieves the height of the image in pixels.
+     *
+     * @return The height of the image.
+     */
+    int getHeight();
+
+    /**
+     * Calculates the average brightness of a square segment of the image.
+     *
+     * @param topRow     The row index of the top-left corner of the square.
+     * @param leftColumn The column index of the top-left corner of the square.
+     * @param squareEdge The length of the edges of the square.
+     * @return The brightness of the square, normalized between 0 and 1.
+     */
+    double getSquareBrightness(int topRow, int leftColumn, int squareEdge);
+
+    /**
+     * Calculates the average brightness of a rectangular segment of the image.
+     *
+     * @param topRow       The row index of the top-left corner of the segment.
+     * @param leftColumn   The column index of the top-left corner of the segment.
+     * @param regionHeight The height of the segment in pixels.
+     * @param regionWidth  The width of the segment in pixels.
+     * @return The brightness of the segment, normalized between 0 and 1.
+     * @throws IllegalArgumentException If the source can't answer the brightness of such a segment.
+     */
+    double getAverageBrightness(int topRow, int leftColumn, int regionHeight, int regionWidth)
+            throws IllegalArgumentException;
+}
@@ -0,0 +1,30 @@
+package image;
+
+/**
+ * The policies for tiling an image whose dimensions aren't divisible by the tile size, used when an image is
+ * converted without being padded to powers of two.
+ */
+public enum EdgePolicy {
+
+    /**
+     * There are exactly resolution columns, dividing the width as evenly as possible (so they differ in width
+     * by at most one pixel), & the rows are floor(width / resolution) pixels high, the last of them cut short
+     * by the bottom edge of the image, so its brightness is averaged over the pixels it actually covers.
+     */
+    PARTIAL,
+
+    /**
+     * There are exactly resolution columns, & the image is divided between them (& between a number of rows
+     * keeping the aspect ratio) as evenly as possible, so the tiles differ in size by at most one pixel &
+     * every pixel of the image is used.
+     */
+    STRETCHED,
+
+    /**
+     * The tiles are squares of edge floor(width / resolution), there are exactly resolution columns, & the
+     * pixels left over along the edges are cropped, evenly from both sides of the image: fewer than
+     * resolution pixels horizontally (width modulo resolution, which may be several tiles wide when the
+     * edge is small) & less than one tile vertically.
+     */
+    CROPPED
+}
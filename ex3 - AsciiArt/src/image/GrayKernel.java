@@ -0,0 +1,48 @@
+package image;
+
+/**
+ * An object implementing this interface runs the bulk loops of the brightness stage over rows of pixels:
+ * the conversion to fixed-point grayscale values & the sums of rows. Every implementation computes exactly
+ * the same values, so the engine running them never changes the art.
+ */
+interface GrayKernel {
+
+    /**
+     * Converts a row of packed ARGB pixels to fixed-point grayscale values, as RGB2GrayFixed(int) of
+     * ImageManipulator. The source & destination may be the same array.
+     *
+     * @param rgbRow  The packed ARGB values of the pixels.
+     * @param grayRow The array to store the grayscale values in, scaled by GRAY_SCALE.
+     * @param length  The number of pixels to convert.
+     */
+    void toGray(int[] rgbRow, int[] grayRow, int length);
+
+    /**
+     * Sums a range of fixed-point grayscale values, each at most GRAY_SCALE * MAX_GRAYSCALE_INTENSITY.
+     *
+     * @param grayRow The fixed-point grayscale values.
+     * @param from    The first index of the range, inclusive.
+     * @param to      The last index of the range, exclusive.
+     * @return The sum of the values of the range.
+     */
+    long sum(int[] grayRow, int from, int to);
+
+    /**
+     * Adds a row of fixed-point grayscale values to another, element by element.
+     *
+     * @param target The row to add to.
+     * @param source The row to add.
+     * @param length The number of values to add.
+     */
+    void addRow(int[] target, int[] source, int length);
+
+    /**
+     * Adds a row of sums to another row of the same table, element by element.
+     *
+     * @param table        The table of the rows.
+     * @param targetOffset The index of the first element of the row to add to.
+     * @param sourceOffset The index of the first element of the row to add.
+     * @param length       The number of values to add.
+     */
+    void addRow(long[] table, int targetOffset, int sourceOffset, int length);
+}
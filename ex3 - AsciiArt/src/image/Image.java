@@ -5,6 +5,7 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * A package-private class of the package image.
@@ -14,40 +15,90 @@ import java.io.IOException;
 public class Image {
 
     /**
-     * A 2D array of color objects representing the pixel data of the image.
-     * Each element in the array corresponds to a pixel's color in the image.
+     * The packed ARGB value of every pixel of a view which lies outside of the pixel data (white).
      */
-    private final Color[][] pixelArray;
+    private static final int BACKGROUND_RGB = Color.WHITE.getRGB();
 
     /**
-     * The width of the image in pixels. This represents the number of columns in the pixel array.
+     * The pixel data of the image, packed as one ARGB int per pixel and stored row after row.
+     * The pixel at (row, column) of the data is stored at index row * dataWidth + column. Views share the
+     * pixel data of the image they were created from.
+     */
+    private final int[] pixels;
+
+    /**
+     * The number of columns of the pixel data.
+     */
+    private final int dataWidth;
+
+    /**
+     * The first row of the pixel data the image may read, inclusive. A view reads only the data within the
+     * bounds of the image it was created from (& of that image's own window), so a view of a view never
+     * reveals pixels its parent didn't have.
+     */
+    private final int windowTop;
+
+    /**
+     * The first column of the pixel data the image may read, inclusive.
+     */
+    private final int windowLeft;
+
+    /**
+     * The last row of the pixel data the image may read, exclusive.
+     */
+    private final int windowBottom;
+
+    /**
+     * The last column of the pixel data the image may read, exclusive.
+     */
+    private final int windowRight;
+
+    /**
+     * The row of the pixel data at which the image starts, negative if the image starts above the data.
+     */
+    private final int rowOffset;
+
+    /**
+     * The column of the pixel data at which the image starts, negative if the image starts left of the data.
+     */
+    private final int columnOffset;
+
+    /**
+     * The width of the image in pixels.
      */
     private final int width;
 
     /**
-     * The height of the image in pixels. This represents the number of rows in the pixel array.
+     * The height of the image in pixels.
      */
     private final int height;
 
     /**
      * Constructs an Image object by loading an image from the specified file.
-     * The image is read into a 2D array of color objects representing the pixel data.
+     * The decoded image is converted in bulk into a packed ARGB array representing the pixel data (see
+     * ImageDecoder).
      *
      * @param filename The path to the image file to be loaded.
      * @throws IOException If an error occurs during reading the image file.
      */
     public Image(String filename) throws IOException {
-        BufferedImage im = ImageIO.read(new File(filename));
-        width = im.getWidth();
-        height = im.getHeight();
-
+        this(filename, 1);
+    }
 
-        pixelArray = new Color[height][width];
-        for (int i = 0; i < height; i++) {
-            for (int j = 0; j < width; j++) {
-                pixelArray[i][j] = new Color(im.getRGB(j, i));
-            }
-        }
+    /**
+     * Constructs an Image object by loading an image from the specified file at a reduced level of detail,
+     * reading only every subsampling-th pixel of every subsampling-th row of the file.
+     *
+     * @param filename    The path to the image file to be loaded.
+     * @param subsampling The subsampling factor, where 1 loads the image at full resolution.
+     * @throws IOException If an error occurs during reading the image file.
+     */
+    public Image(String filename, int subsampling) throws IOException {
+        BufferedImage im = ImageDecoder.read(filename, subsampling);
+        width = dataWidth = windowRight = im.getWidth();
+        height = windowBottom = im.getHeight();
+        rowOffset = columnOffset = windowTop = windowLeft = 0;
+        pixels = ImageDecoder.toPackedPixels(im);
     }
 
     /**
@@ -59,11 +110,74 @@ public class Image {
      * @param height The height of the image in pixels.
      */
     public Image(Color[][] pixelArray, int width, int height) {
-        this.pixelArray = pixelArray;
+        this(new int[height * width], width, height);
+        for (int row = 0; row < height; row++) {
+            for (int column = 0; column < width; column++) {
+                pixels[row * width + column] = pixelArray[row][column].getRGB();
+            }
+        }
+    }
+
+    /**
+     * Constructs an Image object directly over packed ARGB pixel data, without copying it.
+     * The pixel at (row, column) is expected at index row * width + column.
+     *
+     * @param pixels The packed ARGB pixel data of the image.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     */
+    public Image(int[] pixels, int width, int height) {
+        this(pixels, width, 0, 0, height, width, 0, 0, width, height);
+    }
+
+    /**
+     * Constructs a view over packed ARGB pixel data, which may cover only part of the readable window of the
+     * data, or extend beyond it (in which case the pixels outside of the window are white).
+     *
+     * @param pixels       The packed ARGB pixel data.
+     * @param dataWidth    The number of columns of the pixel data.
+     * @param windowTop    The first readable row of the pixel data.
+     * @param windowLeft   The first readable column of the pixel data.
+     * @param windowBottom The row of the pixel data after the last readable one.
+     * @param windowRight  The column of the pixel data after the last readable one.
+     * @param rowOffset    The row of the pixel data at which the view starts.
+     * @param columnOffset The column of the pixel data at which the view starts.
+     * @param width        The width of the view in pixels.
+     * @param height       The height of the view in pixels.
+     */
+    private Image(int[] pixels, int dataWidth, int windowTop, int windowLeft, int windowBottom,
+                  int windowRight, int rowOffset, int columnOffset, int width, int height) {
+        this.pixels = pixels;
+        this.dataWidth = dataWidth;
+        this.windowTop = windowTop;
+        this.windowLeft = windowLeft;
+        this.windowBottom = windowBottom;
+        this.windowRight = windowRight;
+        this.rowOffset = rowOffset;
+        this.columnOffset = columnOffset;
         this.width = width;
         this.height = height;
     }
 
+    /**
+     * Creates a lightweight view of a rectangle of this image, sharing its pixel data without copying it.
+     * The rectangle may extend beyond the image, in which case the pixels outside of it are white (even where
+     * this image is itself a view of larger data), which allows padding an image without copying it.
+     *
+     * @param top        The row of this image at which the view starts, may be negative.
+     * @param left       The column of this image at which the view starts, may be negative.
+     * @param viewWidth  The width of the view in pixels.
+     * @param viewHeight The height of the view in pixels.
+     * @return The view.
+     */
+    Image createView(int top, int left, int viewWidth, int viewHeight) {
+        // the view reads only the data this image covers, within this image's own window.
+        return new Image(pixels, dataWidth, Math.max(windowTop, rowOffset),
+                Math.max(windowLeft, columnOffset), Math.min(windowBottom, rowOffset + height),
+                Math.min(windowRight, columnOffset + width), rowOffset + top, columnOffset + left, viewWidth,
+                viewHeight);
+    }
+
     /**
      * Retrieves the width of the image in pixels.
      * @return The width of the image.
@@ -89,7 +203,46 @@ public class Image {
      * @return The color of the pixel at the specified coordinates.
      */
     public Color getPixel(int x, int y) {
-        return pixelArray[x][y];
+        return new Color(getRGB(x, y), true);
+    }
+
+    /**
+     * Retrieves the packed ARGB value of a specific pixel in the image, without allocating a Color.
+     *
+     * @param x The x-coordinate of the pixel (row index).
+     * @param y The y-coordinate of the pixel (column index).
+     * @return The packed ARGB value of the pixel at the specified coordinates.
+     */
+    public int getRGB(int x, int y) {
+        int row = x + rowOffset;
+        int column = y + columnOffset;
+        if (row < windowTop || row >= windowBottom || column < windowLeft || column >= windowRight) {
+            return BACKGROUND_RGB;
+        }
+        return pixels[row * dataWidth + column];
+    }
+
+    /**
+     * Copies a whole row of packed ARGB pixels into the given buffer, which must hold at least
+     * width values. Reusing the same buffer for every row allows iterating the image without any
+     * per-pixel allocation.
+     *
+     * @param x           The row index to copy.
+     * @param destination The buffer to copy the row into.
+     */
+    public void copyRow(int x, int[] destination) {
+        int row = x + rowOffset;
+        // the columns of the image which lie within the readable window, all the rest are white.
+        int firstColumn = Math.max(0, windowLeft - columnOffset);
+        int lastColumn = Math.min(width, windowRight - columnOffset);
+        if (row < windowTop || row >= windowBottom || firstColumn >= lastColumn) {
+            Arrays.fill(destination, 0, width, BACKGROUND_RGB);
+            return;
+        }
+        Arrays.fill(destination, 0, firstColumn, BACKGROUND_RGB);
+        System.arraycopy(pixels, row * dataWidth + columnOffset + firstColumn, destination, firstColumn,
+                lastColumn - firstColumn);
+        Arrays.fill(destination, lastColumn, width, BACKGROUND_RGB);
     }
 
     /**
@@ -99,14 +252,12 @@ public class Image {
      * @throws RuntimeException If an error occurs during writing the file.
      */
     public void saveImage(String fileName) {
-        // Initialize BufferedImage, assuming Color[][] is already properly populated.
-        BufferedImage bufferedImage = new BufferedImage(pixelArray[0].length, pixelArray.length,
-                BufferedImage.TYPE_INT_RGB);
-        // Set each pixel of the BufferedImage to the color from the Color[][].
-        for (int x = 0; x < pixelArray.length; x++) {
-            for (int y = 0; y < pixelArray[x].length; y++) {
-                bufferedImage.setRGB(y, x, pixelArray[x][y].getRGB());
-            }
+        // Initialize BufferedImage & copy the packed pixels into it a whole row at a time.
+        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] rowBuffer = new int[width];
+        for (int x = 0; x < height; x++) {
+            copyRow(x, rowBuffer);
+            bufferedImage.setRGB(0, x, width, 1, rowBuffer, 0, width);
         }
         File outputfile = new File(fileName + ".jpeg");
         try {
@@ -0,0 +1,287 @@
+package image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A utility class for converting decoded images into packed opaque ARGB pixels in bulk.
+ * For the layouts ImageIO usually decodes into (packed int RGB/ARGB & interleaved byte BGR/ABGR) the
+ * backing data buffer of the raster is read directly; any other layout falls back to a single bulk getRGB
+ * call over the whole image, which is still much faster than calling getRGB once per pixel.
+ * It can also decode image files at a reduced level of detail, reading only every n-th pixel of every n-th
+ * row of the file, for when the full resolution of a huge image isn't needed.
+ */
+public class ImageDecoder {
+
+    /**
+     * A mask of the alpha channel of a packed ARGB pixel, used to make the pixels opaque.
+     */
+    private static final int OPAQUE_ALPHA_MASK = 0xFF000000;
+
+    /**
+     * Mask of a single 8 bit channel.
+     */
+    private static final int CHANNEL_MASK = 0xFF;
+
+    /**
+     * Bit offset of the red channel within a packed ARGB pixel.
+     */
+    private static final int RED_SHIFT = 16;
+
+    /**
+     * Bit offset of the green channel within a packed ARGB pixel.
+     */
+    private static final int GREEN_SHIFT = 8;
+
+    /**
+     * The number of bytes of a pixel in the TYPE_3BYTE_BGR layout.
+     */
+    private static final int BGR_PIXEL_STRIDE = 3;
+
+    /**
+     * The number of bytes of a pixel in the TYPE_4BYTE_ABGR layout.
+     */
+    private static final int ABGR_PIXEL_STRIDE = 4;
+
+    /**
+     * Error message of a file which isn't an image in a supported format.
+     */
+    private static final String ERROR_MESSAGE_UNSUPPORTED = "Unsupported image file: ";
+
+    /**
+     * The index of the (first) image within an image file.
+     */
+    private static final int IMAGE_INDEX = 0;
+
+    /**
+     * The separator between the name of a file & its suffix.
+     */
+    private static final char SUFFIX_SEPARATOR = '.';
+
+    /**
+     * The file suffixes of the formats ImageIO has readers for, in lower case.
+     */
+    private static final Set<String> READER_SUFFIXES = buildReaderSuffixes();
+
+    /**
+     * Decodes an image file, reading only every subsampling-th pixel of every subsampling-th row. A
+     * subsampling of 1 decodes the image at full resolution, exactly as ImageIO.read does.
+     *
+     * @param filename    The path to the image file.
+     * @param subsampling The subsampling factor, at least 1.
+     * @return The decoded image, of dimensions ceil(width / subsampling) x ceil(height / subsampling).
+     * @throws IOException If the file can't be read or isn't an image in a supported format.
+     */
+    public static BufferedImage read(String filename, int subsampling) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+            ImageReader reader = getReader(input, filename);
+            try {
+                ImageReadParam param = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(IMAGE_INDEX, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Reads the dimensions of an image file from its header, without decoding its pixels.
+     *
+     * @param filename The path to the image file.
+     * @return The width & height of the image in pixels.
+     * @throws IOException If the file can't be read or isn't an image in a supported format.
+     */
+    public static Dimension readSize(String filename) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new File(filename))) {
+            ImageReader reader = getReader(input, filename);
+            try {
+                return new Dimension(reader.getWidth(IMAGE_INDEX), reader.getHeight(IMAGE_INDEX));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Checks whether the name of a file has the suffix of an image format ImageIO can read (case
+     * insensitively), without opening the file.
+     *
+     * @param filename The name or path of the file.
+     * @return true if the suffix is of a readable image format, false otherwise.
+     */
+    public static boolean hasReadableSuffix(String filename) {
+        int separator = filename.lastIndexOf(SUFFIX_SEPARATOR);
+        return separator >= 0 &&
+                READER_SUFFIXES.contains(filename.substring(separator + 1).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Collects the file suffixes of the formats ImageIO has readers for (several readers may share one).
+     *
+     * @return The suffixes, in lower case.
+     */
+    private static Set<String> buildReaderSuffixes() {
+        Set<String> suffixes = new HashSet<>();
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            suffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+        return suffixes;
+    }
+
+    /**
+     * Finds an image reader for the given input & attaches it to the input. The reader may read the image
+     * several times (e.g. a region at a time), & should be disposed by the caller.
+     *
+     * @param input    The input stream of the image file, or null if it couldn't be opened.
+     * @param filename The path to the image file, used for the error message.
+     * @return An image reader reading from the input.
+     * @throws IOException If the file isn't an image in a supported format.
+     */
+    public static ImageReader getReader(ImageInputStream input, String filename) throws IOException {
+        if (input == null) {
+            throw new IOException(ERROR_MESSAGE_UNSUPPORTED + filename);
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            throw new IOException(ERROR_MESSAGE_UNSUPPORTED + filename);
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, false, true);
+        return reader;
+    }
+
+    /**
+     * Converts a decoded image into packed opaque ARGB pixels, stored row after row.
+     *
+     * @param image The decoded image.
+     * @return The packed pixels of the image, of length width * height.
+     */
+    public static int[] toPackedPixels(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = new int[width * height];
+        Raster raster = image.getRaster();
+        // a raster which is a view into a larger one can't be read directly.
+        boolean plainRaster = raster.getParent() == null && raster.getSampleModelTranslateX() == 0 &&
+                raster.getSampleModelTranslateY() == 0;
+
+        switch (plainRaster ? image.getType() : BufferedImage.TYPE_CUSTOM) {
+            case BufferedImage.TYPE_INT_RGB:
+                /* fallthrough */
+            case BufferedImage.TYPE_INT_ARGB:
+                if (readPackedInts(raster, pixels, width, height)) {
+                    return pixels;
+                }
+                break;
+            case BufferedImage.TYPE_3BYTE_BGR:
+                if (readInterleavedBytes(raster, pixels, width, height, BGR_PIXEL_STRIDE)) {
+                    return pixels;
+                }
+                break;
+            case BufferedImage.TYPE_4BYTE_ABGR:
+                if (readInterleavedBytes(raster, pixels, width, height, ABGR_PIXEL_STRIDE)) {
+                    return pixels;
+                }
+                break;
+            default:
+                break;
+        }
+
+        image.getRGB(0, 0, width, height, pixels, 0, width);
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] |= OPAQUE_ALPHA_MASK;
+        }
+        return pixels;
+    }
+
+    /**
+     * Reads a raster whose pixels are packed ints (xRGB or ARGB) directly from its data buffer.
+     *
+     * @param raster The raster to read.
+     * @param pixels The array to store the opaque ARGB pixels in.
+     * @param width  The width of the raster.
+     * @param height The height of the raster.
+     * @return true if the raster was read, false if its layout isn't supported.
+     */
+    private static boolean readPackedInts(Raster raster, int[] pixels, int width, int height) {
+        DataBuffer buffer = raster.getDataBuffer();
+        if (!(buffer instanceof DataBufferInt) || buffer.getNumBanks() != 1 ||
+                !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel)) {
+            return false;
+        }
+        int[] data = ((DataBufferInt) buffer).getData();
+        int scanlineStride = ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+        int offset = buffer.getOffset();
+
+        for (int row = 0; row < height; row++) {
+            int source = offset + row * scanlineStride;
+            int destination = row * width;
+            for (int col = 0; col < width; col++) {
+                pixels[destination + col] = data[source + col] | OPAQUE_ALPHA_MASK;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a raster whose pixels are interleaved bytes in (A)BGR order directly from its data buffer.
+     *
+     * @param raster      The raster to read.
+     * @param pixels      The array to store the opaque ARGB pixels in.
+     * @param width       The width of the raster.
+     * @param height      The height of the raster.
+     * @param pixelStride The number of bytes of every pixel, 3 for BGR & 4 for ABGR.
+     * @return true if the raster was read, false if its layout isn't supported.
+     */
+    private static boolean readInterleavedBytes(Raster raster, int[] pixels, int width, int height,
+                                                int pixelStride) {
+        DataBuffer buffer = raster.getDataBuffer();
+        if (!(buffer instanceof DataBufferByte) || buffer.getNumBanks() != 1 ||
+                !(raster.getSampleModel() instanceof ComponentSampleModel)) {
+            return false;
+        }
+        ComponentSampleModel sampleModel = (ComponentSampleModel) raster.getSampleModel();
+        int[] bandOffsets = sampleModel.getBandOffsets();
+        if (sampleModel.getPixelStride() != pixelStride) {
+            return false;
+        }
+        // the bands are R, G, B (& A), whose bytes are stored in reverse order.
+        int redOffset = bandOffsets[0];
+        int greenOffset = bandOffsets[1];
+        int blueOffset = bandOffsets[2];
+        byte[] data = ((DataBufferByte) buffer).getData();
+        int scanlineStride = sampleModel.getScanlineStride();
+        int offset = buffer.getOffset();
+
+        for (int row = 0; row < height; row++) {
+            int source = offset + row * scanlineStride;
+            int destination = row * width;
+            for (int col = 0; col < width; col++, source += pixelStride) {
+                pixels[destination + col] = OPAQUE_ALPHA_MASK |
+                        (data[source + redOffset] & CHANNEL_MASK) << RED_SHIFT |
+                        (data[source + greenOffset] & CHANNEL_MASK) << GREEN_SHIFT |
+                        (data[source + blueOffset] & CHANNEL_MASK);
+            }
+        }
+        return true;
+    }
+}
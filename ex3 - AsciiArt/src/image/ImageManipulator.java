@@ -10,7 +10,7 @@ public class ImageManipulator {
     /**
      * Maximum intensity value for grayscale images.
      */
-    private static final int MAX_GRAYSCALE_INTENSITY = 255;
+    public static final int MAX_GRAYSCALE_INTENSITY = 255;
 
     /**
      * Coefficient for red color to calculate grayscale value.
@@ -26,10 +26,118 @@ public class ImageManipulator {
      * Coefficient for blue color to calculate grayscale value.
      */
     private static final double COEFFICIENT_BLUE = 0.0722;
+
+    /**
+     * The number of fraction bits of fixed-point grayscale values.
+     */
+    public static final int GRAY_FRACTION_BITS = 16;
+
+    /**
+     * The scale of fixed-point grayscale values, i.e. the fixed-point value of a grayscale value of 1.
+     */
+    public static final int GRAY_SCALE = 1 << GRAY_FRACTION_BITS;
+
+    /**
+     * Coefficient for red color to calculate fixed-point grayscale value (COEFFICIENT_RED * GRAY_SCALE).
+     * The fixed-point coefficients are rounded so they sum to exactly GRAY_SCALE, so white stays exactly
+     * MAX_GRAYSCALE_INTENSITY.
+     */
+    static final int FIXED_COEFFICIENT_RED = 13933;
+
+    /**
+     * Coefficient for green color to calculate fixed-point grayscale value (COEFFICIENT_GREEN * GRAY_SCALE).
+     */
+    static final int FIXED_COEFFICIENT_GREEN = 46872;
+
+    /**
+     * Coefficient for blue color to calculate fixed-point grayscale value (COEFFICIENT_BLUE * GRAY_SCALE).
+     */
+    static final int FIXED_COEFFICIENT_BLUE = 4731;
+
+    /**
+     * The number of values of a single 8 bit channel.
+     */
+    private static final int CHANNEL_VALUES = 256;
+
+    /**
+     * The encoded sRGB value below which the sRGB transfer function is linear.
+     */
+    private static final double SRGB_LINEAR_THRESHOLD = 0.04045;
+
+    /**
+     * The linear-light value below which the sRGB transfer function is linear.
+     */
+    private static final double LINEAR_SRGB_THRESHOLD = 0.0031308;
+
+    /**
+     * The slope of the linear segment of the sRGB transfer function.
+     */
+    private static final double SRGB_LINEAR_SLOPE = 12.92;
+
+    /**
+     * The offset of the power segment of the sRGB transfer function.
+     */
+    private static final double SRGB_OFFSET = 0.055;
+
+    /**
+     * The exponent of the power segment of the sRGB transfer function.
+     */
+    private static final double SRGB_GAMMA = 2.4;
+
+    /**
+     * The contribution of every red value to the fixed-point linear-light grayscale value of a pixel, i.e.
+     * the red value converted to linear light, weighted by FIXED_COEFFICIENT_RED & scaled to
+     * MAX_GRAYSCALE_INTENSITY.
+     */
+    private static final int[] RED_LINEAR_GRAY = buildLinearGrayTable(FIXED_COEFFICIENT_RED);
+
+    /**
+     * The contribution of every green value to the fixed-point linear-light grayscale value of a pixel.
+     */
+    private static final int[] GREEN_LINEAR_GRAY = buildLinearGrayTable(FIXED_COEFFICIENT_GREEN);
+
+    /**
+     * The contribution of every blue value to the fixed-point linear-light grayscale value of a pixel.
+     */
+    private static final int[] BLUE_LINEAR_GRAY = buildLinearGrayTable(FIXED_COEFFICIENT_BLUE);
+
     private static final String START_MESSAGE_INVALID_RESOLUTION = "Invalid resolution: ";
 
     /**
-     * Pads the given image to the nearest power of two for both width and height.
+     * Bit offset of the red channel within a packed ARGB pixel.
+     */
+    static final int RED_SHIFT = 16;
+
+    /**
+     * Bit offset of the green channel within a packed ARGB pixel.
+     */
+    static final int GREEN_SHIFT = 8;
+
+    /**
+     * Mask of a single 8 bit channel within a packed ARGB pixel.
+     */
+    static final int CHANNEL_MASK = 0xFF;
+
+    /**
+     * The system property which, set to "false", disables the Vector API kernel even where it is available.
+     */
+    public static final String VECTOR_KERNEL_PROPERTY = "ascii_art.vector";
+
+    /**
+     * The name of the Vector API kernel class, which is compiled separately & may be missing.
+     */
+    private static final String VECTOR_KERNEL_CLASS = "image.VectorGrayKernel";
+
+    /**
+     * The kernel running the bulk loops of the brightness stage: the Vector API kernel where it can be
+     * loaded, ScalarGrayKernel otherwise.
+     */
+    private static final GrayKernel KERNEL = selectKernel();
+
+    /**
+     * Pads the given image to the nearest power of two for both width and height. The padded image is a
+     * lightweight view over the pixels of the original image, which are not copied; the padding around the
+     * original image is white.
      *
      * @param image The original image to pad.
      * @return A new Image object with padding applied.
@@ -38,28 +146,14 @@ public class ImageManipulator {
         int newHeight = nearestPowerOfTwo(image.getHeight());
         int newWidth = nearestPowerOfTwo(image.getWidth());
 
-        Color[][] colorArray = new Color[newHeight][newWidth];
-        for (int row = 0; row < newHeight; row++) {
-            for (int col = 0; col < newWidth; col++) {
-                colorArray[row][col] = Color.WHITE;
-            }
-        }
-        
-        /** 
-         * This part is responsible for copying the original image to the center of the new array we created
+        /*
+         * The original image is centered within the padded image.
          * Calculate how many pixels should be added to each side to center the image.
          */
-            
         int padHeight = (newHeight - image.getHeight()) / 2;
         int padWidth = (newWidth - image.getWidth()) / 2;
 
-        for (int row = 0; row < image.getHeight(); row++) {
-            for (int column = 0; column < image.getWidth(); column++) {
-                colorArray[row + padHeight][column + padWidth] = image.getPixel(row, column);
-            }
-        }
-
-        return new Image(colorArray, newWidth, newHeight);
+        return image.createView(-padHeight, -padWidth, newWidth, newHeight);
     }
 
     /**
@@ -105,22 +199,34 @@ public class ImageManipulator {
      * @return true if the resolution is valid, false otherwise.
      */
     public static boolean isValidResolution(Image image, int resolution) {
+        return isValidResolution(image.getWidth(), image.getHeight(), resolution);
+    }
+
+    /**
+     * Checks if the given resolution is valid for splitting an image of the given dimensions.
+     *
+     * @param width      The width of the image in pixels.
+     * @param height     The height of the image in pixels.
+     * @param resolution The resolution to validate.
+     * @return true if the resolution is valid, false otherwise.
+     */
+    public static boolean isValidResolution(int width, int height, int resolution) {
         //checked resolution is in range
-        if (resolution < Math.max(1, (image.getWidth() / image.getHeight()))) {
+        if (resolution < Math.max(1, (width / height))) {
             return false;
         }
-        if (resolution > image.getWidth()) {
+        if (resolution > width) {
             return false;
         }
         
         
-        int squareEdge = image.getWidth() / resolution;
-        int sizeHeightSplitedImage = image.getHeight() / squareEdge;
+        int squareEdge = width / resolution;
+        int sizeHeightSplitedImage = height / squareEdge;
 
-        if (((double) image.getWidth()) / resolution > squareEdge) {
+        if (((double) width) / resolution > squareEdge) {
             return false;
         }
-        if (((double) image.getHeight()) / squareEdge > sizeHeightSplitedImage) {
+        if (((double) height) / squareEdge > sizeHeightSplitedImage) {
             return false;
         }
 
@@ -128,50 +234,217 @@ public class ImageManipulator {
     }
 
     /**
-     * Calculates the brightness of the given image.
+     * Checks if the given resolution is valid for tiling an image of the given dimensions, which isn't
+     * padded, by the given edge policy. Every resolution up to the width of the image is valid, as long as
+     * the image is high enough for a single row of tiles.
+     *
+     * @param width      The width of the image in pixels.
+     * @param height     The height of the image in pixels.
+     * @param resolution The resolution to validate.
+     * @param edgePolicy The policy of the tiles along the edges of the image.
+     * @return true if the resolution is valid, false otherwise.
+     */
+    public static boolean isValidResolution(int width, int height, int resolution, EdgePolicy edgePolicy) {
+        if (resolution < 1 || resolution > width) {
+            return false;
+        }
+        // a cropped image must keep at least one full row of tiles.
+        return edgePolicy != EdgePolicy.CROPPED || height >= width / resolution;
+    }
+
+    /**
+     * Calculates the brightness of the given image, summing the fixed-point grayscale values of its pixels
+     * exactly.
      *
      * @param image The image to calculate the brightness for.
      * @return The brightness level of the image.
      */
     public static double getImageBrightness(Image image) {
-        double[][] grayImage = RGB2Gray(image);
-        double sumGray = 0;
+        long sumGray = 0;
+        int[] rowBuffer = new int[image.getWidth()];
         for (int row = 0; row < image.getHeight(); row++) {
-            for (int col = 0; col < image.getWidth(); col++) {
-                sumGray += grayImage[row][col];
-            }
+            image.copyRow(row, rowBuffer);
+            RGB2GrayFixed(rowBuffer, rowBuffer, rowBuffer.length);
+            sumGray += sumGrayFixed(rowBuffer, 0, rowBuffer.length);
         }
-        return sumGray / (MAX_GRAYSCALE_INTENSITY * image.getHeight() * image.getWidth());
+        return sumGray / ((double) GRAY_SCALE * MAX_GRAYSCALE_INTENSITY * image.getHeight() *
+                image.getWidth());
     }
 
     /**
-     * Converts an image to grayscale using the RGB values and predefined coefficients.
+     * Converts a single packed ARGB pixel to grayscale using predefined coefficients.
      *
-     * @param image The image to convert.
-     * @return A 2D array of grayscale values.
+     * @param rgb The packed ARGB value of the pixel to convert.
+     * @return The grayscale value of the pixel.
      */
-    private static double[][] RGB2Gray(Image image) {
-        double[][] grayColorImage = new double[image.getHeight()][image.getWidth()];
-        for (int row = 0; row < image.getHeight(); row++) {
-            for (int col = 0; col < image.getWidth(); col++) {
-                Color color = image.getPixel(row, col);
-                double grayPixel = RGB2Gray(color);
-                grayColorImage[row][col] = grayPixel;
-            }
+    public static double RGB2Gray(int rgb) {
+        return ((rgb >> RED_SHIFT) & CHANNEL_MASK) * COEFFICIENT_RED +
+                ((rgb >> GREEN_SHIFT) & CHANNEL_MASK) * COEFFICIENT_GREEN +
+                (rgb & CHANNEL_MASK) * COEFFICIENT_BLUE;
+    }
+
+    /**
+     * Converts a single packed ARGB pixel to a fixed-point grayscale value, scaled by GRAY_SCALE, using
+     * integer arithmetic only. The result differs from RGB2Gray(rgb) * GRAY_SCALE by less than 0.003 of a
+     * gray level, i.e. the normalized brightness of a pixel (or the average of any number of pixels) differs
+     * from the double path by less than 2^-16.
+     *
+     * @param rgb The packed ARGB value of the pixel to convert.
+     * @return The grayscale value of the pixel, scaled by GRAY_SCALE.
+     */
+    public static int RGB2GrayFixed(int rgb) {
+        return ((rgb >> RED_SHIFT) & CHANNEL_MASK) * FIXED_COEFFICIENT_RED +
+                ((rgb >> GREEN_SHIFT) & CHANNEL_MASK) * FIXED_COEFFICIENT_GREEN +
+                (rgb & CHANNEL_MASK) * FIXED_COEFFICIENT_BLUE;
+    }
+
+    /**
+     * Converts a row of packed ARGB pixels to fixed-point grayscale values in bulk, many pixels at a time
+     * where the Vector API kernel is loaded. The source & destination may be the same array.
+     *
+     * @param rgbRow  The packed ARGB values of the pixels.
+     * @param grayRow The array to store the grayscale values in, scaled by GRAY_SCALE.
+     * @param length  The number of pixels to convert.
+     */
+    public static void RGB2GrayFixed(int[] rgbRow, int[] grayRow, int length) {
+        KERNEL.toGray(rgbRow, grayRow, length);
+    }
+
+    /**
+     * Converts a single packed ARGB pixel to a fixed-point linear-light grayscale value, scaled by
+     * GRAY_SCALE: the channels are converted from sRGB to linear light & weighted, all through three
+     * precomputed 256-entry tables, so it costs three table reads & two additions.
+     *
+     * @param rgb The packed ARGB value of the pixel to convert.
+     * @return The linear-light grayscale value of the pixel, scaled by GRAY_SCALE.
+     */
+    public static int RGB2LinearGrayFixed(int rgb) {
+        return RED_LINEAR_GRAY[(rgb >> RED_SHIFT) & CHANNEL_MASK] +
+                GREEN_LINEAR_GRAY[(rgb >> GREEN_SHIFT) & CHANNEL_MASK] +
+                BLUE_LINEAR_GRAY[rgb & CHANNEL_MASK];
+    }
+
+    /**
+     * Converts a row of packed ARGB pixels to fixed-point grayscale values in bulk, either gamma-encoded (as
+     * RGB2GrayFixed) or in linear light (as RGB2LinearGrayFixed). The source & destination may be the same
+     * array.
+     *
+     * @param rgbRow      The packed ARGB values of the pixels.
+     * @param grayRow     The array to store the grayscale values in, scaled by GRAY_SCALE.
+     * @param length      The number of pixels to convert.
+     * @param linearLight Whether to convert the pixels to linear-light grayscale values.
+     */
+    public static void RGB2GrayFixed(int[] rgbRow, int[] grayRow, int length, boolean linearLight) {
+        if (!linearLight) {
+            RGB2GrayFixed(rgbRow, grayRow, length);
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            grayRow[i] = RGB2LinearGrayFixed(rgbRow[i]);
+        }
+    }
+
+    /**
+     * Encodes a normalized linear-light brightness (such as the average linear-light brightness of a tile)
+     * back to the sRGB scale, so it can be matched like a gamma-encoded brightness.
+     *
+     * @param linear The linear-light brightness, between 0 and 1.
+     * @return The sRGB encoded brightness, between 0 and 1.
+     */
+    public static double linearToSrgb(double linear) {
+        if (linear <= LINEAR_SRGB_THRESHOLD) {
+            return linear * SRGB_LINEAR_SLOPE;
         }
+        return (1 + SRGB_OFFSET) * Math.pow(linear, 1 / SRGB_GAMMA) - SRGB_OFFSET;
+    }
 
-        return grayColorImage;
+    /**
+     * Sums a range of fixed-point grayscale values, as produced by RGB2GrayFixed.
+     *
+     * @param grayRow The fixed-point grayscale values.
+     * @param from    The first index of the range, inclusive.
+     * @param to      The last index of the range, exclusive.
+     * @return The sum of the values of the range.
+     */
+    public static long sumGrayFixed(int[] grayRow, int from, int to) {
+        return KERNEL.sum(grayRow, from, to);
     }
 
     /**
-     * Converts a single pixel from RGB to grayscale using predefined coefficients.
+     * Adds a row of fixed-point grayscale values to another, element by element.
      *
-     * @param color The color of the pixel to convert.
-     * @return The grayscale value of the pixel.
+     * @param target The row to add to.
+     * @param source The row to add.
+     * @param length The number of values to add.
+     */
+    static void addRow(int[] target, int[] source, int length) {
+        KERNEL.addRow(target, source, length);
+    }
+
+    /**
+     * Adds a row of sums to another row of the same table, element by element.
+     *
+     * @param table        The table of the rows.
+     * @param targetOffset The index of the first element of the row to add to.
+     * @param sourceOffset The index of the first element of the row to add.
+     * @param length       The number of values to add.
+     */
+    static void addRow(long[] table, int targetOffset, int sourceOffset, int length) {
+        KERNEL.addRow(table, targetOffset, sourceOffset, length);
+    }
+
+    /**
+     * Retrieves the name of the kernel running the bulk loops of the brightness stage.
+     *
+     * @return The simple name of the kernel class.
+     */
+    public static String getKernelName() {
+        return KERNEL.getClass().getSimpleName();
+    }
+
+    /**
+     * Loads the Vector API kernel, which exists only where its source root was compiled, & can be
+     * initialized only where the jdk.incubator.vector module was added to the JVM.
+     *
+     * @return The kernel, or null if it can't be loaded.
+     */
+    static GrayKernel loadVectorKernel() {
+        try {
+            return (GrayKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Selects the kernel running the bulk loops of the brightness stage.
+     *
+     * @return The Vector API kernel, unless it can't be loaded or is disabled by VECTOR_KERNEL_PROPERTY, &
+     * a ScalarGrayKernel otherwise.
      */
-    private static double RGB2Gray(Color color) {
-        return color.getRed() * COEFFICIENT_RED + color.getGreen() * COEFFICIENT_GREEN +
-                color.getBlue() * COEFFICIENT_BLUE;
+    private static GrayKernel selectKernel() {
+        GrayKernel vectorKernel = Boolean.parseBoolean(System.getProperty(VECTOR_KERNEL_PROPERTY,
+                Boolean.TRUE.toString())) ? loadVectorKernel() : null;
+        return vectorKernel != null ? vectorKernel : new ScalarGrayKernel();
+    }
+
+    /**
+     * Builds the table of the contributions of every value of a channel to the fixed-point linear-light
+     * grayscale value of a pixel. The contribution of the maximal value is exactly the fixed-point
+     * coefficient times MAX_GRAYSCALE_INTENSITY, so white stays exactly MAX_GRAYSCALE_INTENSITY.
+     *
+     * @param fixedCoefficient The fixed-point coefficient of the channel.
+     * @return The contributions of the values of the channel.
+     */
+    private static int[] buildLinearGrayTable(int fixedCoefficient) {
+        int[] table = new int[CHANNEL_VALUES];
+        for (int value = 0; value < CHANNEL_VALUES; value++) {
+            double encoded = (double) value / MAX_GRAYSCALE_INTENSITY;
+            double linear = encoded <= SRGB_LINEAR_THRESHOLD ? encoded / SRGB_LINEAR_SLOPE :
+                    Math.pow((encoded + SRGB_OFFSET) / (1 + SRGB_OFFSET), SRGB_GAMMA);
+            table[value] = (int) Math.round(linear * fixedCoefficient * MAX_GRAYSCALE_INTENSITY);
+        }
+        return table;
     }
 
     /**
@@ -180,7 +453,7 @@ public class ImageManipulator {
      * @param number The number to find the nearest power of two for.
      * @return The nearest power of two.
      */
-    private static int nearestPowerOfTwo(int number) {
+    public static int nearestPowerOfTwo(int number) {
         return (int) Math.pow(2, Math.ceil(log2(number)));
     }
 
@@ -196,7 +469,7 @@ public class ImageManipulator {
     }
 
     /**
-     * Extracts a sub-image from the given image.
+     * Extracts a sub-image from the given image, as a lightweight view over its pixels.
      *
      * @param image               The original image.
      * @param topLeftCornerRow    The row index of the top-left corner of the sub-image.
@@ -206,16 +479,7 @@ public class ImageManipulator {
      */
     private static Image extractSubImage(Image image, int topLeftCornerRow, int topLeftCornerColumn,
                                          int squareEdge) {
-        Color[][] colors = new Color[squareEdge][squareEdge];
-
-        for (int row = 0; row < squareEdge; row++) {
-            for (int column = 0; column < squareEdge; column++) {
-                colors[row][column] = image.getPixel(topLeftCornerRow + row, topLeftCornerColumn
-                        + column);
-            }
-        }
-
-        return new Image(colors, squareEdge, squareEdge);
+        return image.createView(topLeftCornerRow, topLeftCornerColumn, squareEdge, squareEdge);
     }
 
 }
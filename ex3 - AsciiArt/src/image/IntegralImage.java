@@ -0,0 +1,110 @@
+package image;
+
+/**
+ * A summed-area table of the grayscale values of an image. It is built with a single pass over the pixels
+ * & afterwards answers the average brightness of any rectangular region of the image in O(1), without
+ * copying the region or allocating anything. The table sums fixed-point grayscale values in longs, so it is
+ * exact for images of any size. In linear-light mode the table sums linear-light grayscale values, & the
+ * average of every region is encoded back to sRGB once.
+ */
+public class IntegralImage implements BrightnessSource {
+
+    /**
+     * The width of the original image in pixels.
+     */
+    private final int width;
+
+    /**
+     * The height of the original image in pixels.
+     */
+    private final int height;
+
+    /**
+     * The summed-area table, with one extra leading row & column of zeros. The value at index
+     * row * (width + 1) + column is the sum of the fixed-point grayscale values of all the pixels above & to
+     * the left of (row, column), exclusive.
+     */
+    private final long[] sums;
+
+    /**
+     * Whether the table sums linear-light grayscale values rather than gamma-encoded ones.
+     */
+    private final boolean linearLight;
+
+    /**
+     * Builds the summed-area table of the given image.
+     *
+     * @param image The image to build the table for.
+     */
+    public IntegralImage(Image image) {
+        this(image, false);
+    }
+
+    /**
+     * Builds the summed-area table of the given image, of either gamma-encoded or linear-light grayscale
+     * values.
+     *
+     * @param image       The image to build the table for.
+     * @param linearLight Whether to average the brightness of regions in linear light.
+     */
+    public IntegralImage(Image image, boolean linearLight) {
+        this.linearLight = linearLight;
+        width = image.getWidth();
+        height = image.getHeight();
+        int stride = width + 1;
+        sums = new long[(height + 1) * stride];
+
+        int[] rowBuffer = new int[width];
+        for (int row = 0; row < height; row++) {
+            image.copyRow(row, rowBuffer);
+            ImageManipulator.RGB2GrayFixed(rowBuffer, rowBuffer, width, linearLight);
+            int above = row * stride;
+            int current = above + stride;
+            // the prefix sum of the row is a serial chain of additions, so it is kept apart from adding the
+            // row above, whose additions are independent of each other & run in bulk by the kernel.
+            long rowSum = 0;
+            for (int col = 0; col < width; col++) {
+                rowSum += rowBuffer[col];
+                sums[current + col + 1] = rowSum;
+            }
+            ImageManipulator.addRow(sums, current + 1, above + 1, width);
+        }
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Calculates the average brightness of a rectangular region of the image.
+     *
+     * @param topRow     The row index of the top-left corner of the region.
+     * @param leftColumn The column index of the top-left corner of the region.
+     * @param regionHeight The height of the region in pixels.
+     * @param regionWidth  The width of the region in pixels.
+     * @return The brightness of the region, normalized between 0 and 1.
+     */
+    @Override
+    public double getAverageBrightness(int topRow, int leftColumn, int regionHeight, int regionWidth) {
+        int stride = width + 1;
+        int top = topRow * stride;
+        int bottom = (topRow + regionHeight) * stride;
+        int right = leftColumn + regionWidth;
+        long sum = sums[bottom + right] - sums[top + right] - sums[bottom + leftColumn] +
+                sums[top + leftColumn];
+        double average = sum / ((double) ImageManipulator.GRAY_SCALE *
+                ImageManipulator.MAX_GRAYSCALE_INTENSITY * regionHeight * regionWidth);
+        return linearLight ? ImageManipulator.linearToSrgb(average) : average;
+    }
+
+    @Override
+    public double getSquareBrightness(int topRow, int leftColumn, int squareEdge) {
+        return getAverageBrightness(topRow, leftColumn, squareEdge, squareEdge);
+    }
+}
@@ -0,0 +1,38 @@
+package image;
+
+/**
+ * The portable GrayKernel, running every loop one element at a time. It is used whenever the Vector API
+ * kernel isn't available.
+ */
+class ScalarGrayKernel implements GrayKernel {
+
+    @Override
+    public void toGray(int[] rgbRow, int[] grayRow, int length) {
+        for (int i = 0; i < length; i++) {
+            grayRow[i] = ImageManipulator.RGB2GrayFixed(rgbRow[i]);
+        }
+    }
+
+    @Override
+    public long sum(int[] grayRow, int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += grayRow[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void addRow(int[] target, int[] source, int length) {
+        for (int i = 0; i < length; i++) {
+            target[i] += source[i];
+        }
+    }
+
+    @Override
+    public void addRow(long[] table, int targetOffset, int sourceOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            table[targetOffset + i] += table[sourceOffset + i];
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package image;
+
+/**
+ * The division of an image into the rectangular tiles which are converted into single characters. The tiles
+ * of a row share their top & bottom bounds, & the tiles of a column share their left & right bounds, so the
+ * grid is stored as the bounds of its rows & columns only.
+ */
+public class TileGrid {
+
+    private static final String START_MESSAGE_INVALID_RESOLUTION = "Invalid resolution: ";
+
+    /**
+     * The bounds of the rows of the grid: row i covers the image rows rowBounds[i] (inclusive) to
+     * rowBounds[i + 1] (exclusive).
+     */
+    private final int[] rowBounds;
+
+    /**
+     * The bounds of the columns of the grid: column i covers the image columns columnBounds[i] (inclusive)
+     * to columnBounds[i + 1] (exclusive).
+     */
+    private final int[] columnBounds;
+
+    /**
+     * Constructs a grid of equal square tiles, resolution tiles per row, over an image which is exactly
+     * divisible into them (such as a padded image).
+     *
+     * @param width      The width of the image in pixels.
+     * @param height     The height of the image in pixels.
+     * @param resolution The number of tiles per row.
+     * @throws IllegalArgumentException If the resolution is not valid for the image.
+     */
+    public TileGrid(int width, int height, int resolution) throws IllegalArgumentException {
+        if (!ImageManipulator.isValidResolution(width, height, resolution)) {
+            throw new IllegalArgumentException(START_MESSAGE_INVALID_RESOLUTION + resolution);
+        }
+        int squareEdge = width / resolution;
+        columnBounds = fixedBounds(resolution, squareEdge, 0, width);
+        rowBounds = fixedBounds(height / squareEdge, squareEdge, 0, height);
+    }
+
+    /**
+     * Constructs a grid over an image of any dimensions, tiling its edges by the given policy.
+     *
+     * @param width      The width of the image in pixels.
+     * @param height     The height of the image in pixels.
+     * @param resolution The requested number of tiles per row.
+     * @param edgePolicy The policy of the tiles along the edges of the image.
+     * @throws IllegalArgumentException If the resolution is not valid for the image.
+     */
+    public TileGrid(int width, int height, int resolution, EdgePolicy edgePolicy)
+            throws IllegalArgumentException {
+        if (!ImageManipulator.isValidResolution(width, height, resolution, edgePolicy)) {
+            throw new IllegalArgumentException(START_MESSAGE_INVALID_RESOLUTION + resolution);
+        }
+        switch (edgePolicy) {
+            case PARTIAL:
+                // the width - resolution * partialEdge pixels left over are spread over the columns.
+                int partialEdge = width / resolution;
+                columnBounds = evenBounds(resolution, width);
+                rowBounds = fixedBounds((height + partialEdge - 1) / partialEdge, partialEdge, 0, height);
+                break;
+            case STRETCHED:
+                int rows = Math.max(1, (int) Math.round((double) height * resolution / width));
+                columnBounds = evenBounds(resolution, width);
+                rowBounds = evenBounds(rows, height);
+                break;
+            default:
+                int croppedEdge = width / resolution;
+                int croppedRows = height / croppedEdge;
+                // the cropped pixels are split evenly between both sides of the image.
+                columnBounds = fixedBounds(resolution, croppedEdge, (width - resolution * croppedEdge) / 2,
+                        width);
+                rowBounds = fixedBounds(croppedRows, croppedEdge, (height - croppedRows * croppedEdge) / 2,
+                        height);
+                break;
+        }
+    }
+
+    /**
+     * Retrieves the number of rows of tiles.
+     *
+     * @return The number of rows.
+     */
+    public int getRows() {
+        return rowBounds.length - 1;
+    }
+
+    /**
+     * Retrieves the number of columns of tiles.
+     *
+     * @return The number of columns.
+     */
+    public int getColumns() {
+        return columnBounds.length - 1;
+    }
+
+    /**
+     * Retrieves the top image row of the tiles of a row.
+     *
+     * @param row The row of tiles.
+     * @return The first image row covered by the tiles.
+     */
+    public int getTop(int row) {
+        return rowBounds[row];
+    }
+
+    /**
+     * Retrieves the height of the tiles of a row.
+     *
+     * @param row The row of tiles.
+     * @return The number of image rows covered by the tiles.
+     */
+    public int getTileHeight(int row) {
+        return rowBounds[row + 1] - rowBounds[row];
+    }
+
+    /**
+     * Retrieves the left image column of the tiles of a column.
+     *
+     * @param column The column of tiles.
+     * @return The first image column covered by the tiles.
+     */
+    public int getLeft(int column) {
+        return columnBounds[column];
+    }
+
+    /**
+     * Retrieves the width of the tiles of a column.
+     *
+     * @param column The column of tiles.
+     * @return The number of image columns covered by the tiles.
+     */
+    public int getTileWidth(int column) {
+        return columnBounds[column + 1] - columnBounds[column];
+    }
+
+    /**
+     * Calculates the bounds of tiles of a fixed length, the last of which may be cut short by the limit.
+     *
+     * @param count  The number of tiles.
+     * @param length The length of every tile in pixels.
+     * @param offset The position of the first tile.
+     * @param limit  The position no tile extends beyond.
+     * @return The count + 1 bounds of the tiles.
+     */
+    private static int[] fixedBounds(int count, int length, int offset, int limit) {
+        int[] bounds = new int[count + 1];
+        for (int i = 0; i <= count; i++) {
+            bounds[i] = Math.min(limit, offset + i * length);
+        }
+        return bounds;
+    }
+
+    /**
+     * Calculates the bounds of tiles dividing a length as evenly as possible, so their lengths differ by at
+     * most one pixel.
+     *
+     * @param count  The number of tiles.
+     * @param length The length to divide in pixels.
+     * @return The count + 1 bounds of the tiles.
+     */
+    private static int[] evenBounds(int count, int length) {
+        int[] bounds = new int[count + 1];
+        for (int i = 0; i <= count; i++) {
+            bounds[i] = (int) ((long) i * length / count);
+        }
+        return bounds;
+    }
+}
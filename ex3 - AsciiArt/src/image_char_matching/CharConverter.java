@@ -26,9 +26,9 @@ public class CharConverter {
     private static final double Y_OFFSET_FACTOR = 0.75;
 
     /**
-     * The name of the font used for rendering characters into images.
+     * The name of the default font used for rendering characters into images.
      */
-    private static final String FONT_NAME = "Courier New";
+    public static final String DEFAULT_FONT_NAME = "Courier New";
 
     /**
      * The default resolution for each character's image representation, specifying the
@@ -42,10 +42,23 @@ public class CharConverter {
      * whose dimension in pixels is specified.
      */
     public static boolean[][] convertToBoolArray(char c) {
-        BufferedImage img = getBufferedImage(c, FONT_NAME, DEFAULT_PIXEL_RESOLUTION);
-        boolean[][] matrix = new boolean[DEFAULT_PIXEL_RESOLUTION][DEFAULT_PIXEL_RESOLUTION];
-        for (int y = 0; y < DEFAULT_PIXEL_RESOLUTION; y++) {
-            for (int x = 0; x < DEFAULT_PIXEL_RESOLUTION; x++) {
+        return convertToBoolArray(c, DEFAULT_FONT_NAME, DEFAULT_PIXEL_RESOLUTION);
+    }
+
+    /**
+     * Renders a given character, according to how it looks in the given font, to a square black&white image
+     * (2D array of booleans) of the given dimension in pixels.
+     *
+     * @param c The character to render.
+     * @param fontName The name of the font to use for rendering the character.
+     * @param pixelResolution The height & width in pixels of the square image.
+     * @return A 2D boolean array representing the rendered character.
+     */
+    public static boolean[][] convertToBoolArray(char c, String fontName, int pixelResolution) {
+        BufferedImage img = getBufferedImage(c, fontName, pixelResolution);
+        boolean[][] matrix = new boolean[pixelResolution][pixelResolution];
+        for (int y = 0; y < pixelResolution; y++) {
+            for (int x = 0; x < pixelResolution; x++) {
                 matrix[y][x] = img.getRGB(x, y) == 0; //is the color black
             }
         }
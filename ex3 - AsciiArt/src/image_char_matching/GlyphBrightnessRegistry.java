@@ -0,0 +1,320 @@
+package image_char_matching;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * A process-wide, thread-safe registry of the (un-normalized) brightness of rendered glyphs, with one
+ * registry per font & pixel resolution. A glyph is rendered only the first time its brightness is needed,
+ * and is then shared by every SubImgCharMatcher of the process.
+ * The brightness values are also persisted to a small file in the cache directory of the user (see
+ * locateFile) when the process exits, so later runs don't need to render the glyphs with AWT at all. The file starts with a
+ * header of a magic number, the version of the format, the font name & the pixel resolution; a file whose
+ * header doesn't match the registry (e.g. of an older format, or of another font whose name maps to the same
+ * file name) is ignored & rewritten with the glyphs rendered again.
+ * The registry also holds the shapes of the glyphs, as MASK_EDGE x MASK_EDGE binary masks packed into
+ * MASK_WORDS longs (bit row * MASK_EDGE + column is set for a "white" pixel), rendered on first use only.
+ */
+public class GlyphBrightnessRegistry {
+
+    /**
+     * The height & width in pixels of the binary masks of the glyphs.
+     */
+    public static final int MASK_EDGE = 16;
+
+    /**
+     * The number of longs a binary mask is packed into.
+     */
+    public static final int MASK_WORDS = MASK_EDGE * MASK_EDGE / Long.SIZE;
+
+    /**
+     * The number of bits of the index of a bit within a long.
+     */
+    private static final int BIT_INDEX_BITS = 6;
+
+    /**
+     * Mask of the index of a bit within a long.
+     */
+    private static final int BIT_INDEX_MASK = Long.SIZE - 1;
+
+    /**
+     * The directory of the files the registries are persisted to, relative to the home directory of the user
+     * (or to the temporary directory when the home directory isn't known).
+     */
+    private static final String CACHE_DIRECTORY = ".cache" + File.separator + "ascii_art";
+
+    /**
+     * The prefix of the names of the files the registries are persisted to.
+     */
+    private static final String FILE_PREFIX = "glyph_brightness_";
+
+    /**
+     * The extension of the files the registries are persisted to.
+     */
+    private static final String FILE_EXTENSION = ".bin";
+
+    /**
+     * The magic number the persisted files start with ("GLBR").
+     */
+    private static final int FILE_MAGIC = 0x474C4252;
+
+    /**
+     * The version of the format of the persisted files, incremented on every incompatible change.
+     */
+    private static final int FILE_VERSION = 1;
+
+    /**
+     * The separator between the parts of the name of a persisted file & of a registry key.
+     */
+    private static final String SEPARATOR = "_";
+
+    /**
+     * The character replacing characters of the font name that might not be valid in a file name.
+     */
+    private static final String FILE_NAME_REPLACEMENT = "_";
+
+    /**
+     * A pattern of the characters of the font name which are replaced in the file name.
+     */
+    private static final String INVALID_FILE_NAME_CHARS = "[^A-Za-z0-9]";
+
+    /**
+     * The registries of the process, keyed by font name & pixel resolution.
+     */
+    private static final Map<String, GlyphBrightnessRegistry> REGISTRIES = new ConcurrentHashMap<>();
+
+    /**
+     * The name of the font the glyphs are rendered with.
+     */
+    private final String fontName;
+
+    /**
+     * The height & width in pixels of the square images the glyphs are rendered to.
+     */
+    private final int pixelResolution;
+
+    /**
+     * The brightness of every glyph rendered (or loaded) so far.
+     */
+    private final Map<Character, Double> brightness;
+
+    /**
+     * The binary mask of every glyph rendered for its shape so far.
+     */
+    private final Map<Character, long[]> masks;
+
+    /**
+     * The file the registry is persisted to, or null if its location couldn't be determined.
+     */
+    private final File file;
+
+    /**
+     * Whether glyphs were rendered since the registry was loaded, i.e. whether it should be persisted.
+     */
+    private volatile boolean modified;
+
+    /**
+     * Constructs a registry, loading the previously persisted brightness values if there are any.
+     *
+     * @param fontName        The name of the font the glyphs are rendered with.
+     * @param pixelResolution The resolution of the square images the glyphs are rendered to.
+     */
+    private GlyphBrightnessRegistry(String fontName, int pixelResolution) {
+        this.fontName = fontName;
+        this.pixelResolution = pixelResolution;
+        this.brightness = new ConcurrentHashMap<>();
+        this.masks = new ConcurrentHashMap<>();
+        this.file = locateFile(fontName, pixelResolution);
+        load();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::save));
+    }
+
+    /**
+     * Retrieves the registry of the default font & resolution of CharConverter.
+     *
+     * @return The default registry.
+     */
+    public static GlyphBrightnessRegistry getDefault() {
+        return getRegistry(CharConverter.DEFAULT_FONT_NAME, CharConverter.DEFAULT_PIXEL_RESOLUTION);
+    }
+
+    /**
+     * Retrieves the registry of a font & a pixel resolution, creating it on first use.
+     *
+     * @param fontName        The name of the font the glyphs are rendered with.
+     * @param pixelResolution The resolution of the square images the glyphs are rendered to.
+     * @return The registry of the given font & resolution.
+     */
+    public static GlyphBrightnessRegistry getRegistry(String fontName, int pixelResolution) {
+        return REGISTRIES.computeIfAbsent(fontName + SEPARATOR + pixelResolution,
+                key -> new GlyphBrightnessRegistry(fontName, pixelResolution));
+    }
+
+    /**
+     * Retrieves the brightness of a glyph, i.e. the proportion of its "white" (true) pixels, rendering it if
+     * this is the first time it is needed.
+     *
+     * @param c The character of the glyph.
+     * @return The brightness of the glyph, between 0 and 1.
+     */
+    public double getBrightness(char c) {
+        return brightness.computeIfAbsent(c, this::render);
+    }
+
+    /**
+     * Retrieves the shape of a glyph as a MASK_EDGE x MASK_EDGE binary mask packed into MASK_WORDS longs,
+     * rendering it if this is the first time it is needed. The returned array is shared & must not be
+     * modified.
+     *
+     * @param c The character of the glyph.
+     * @return The binary mask of the glyph.
+     */
+    public long[] getMask(char c) {
+        return masks.computeIfAbsent(c, this::renderMask);
+    }
+
+    /**
+     * Sets a single bit of a packed binary mask.
+     *
+     * @param mask   The packed binary mask, of MASK_WORDS longs.
+     * @param row    The row of the bit, below MASK_EDGE.
+     * @param column The column of the bit, below MASK_EDGE.
+     */
+    public static void setMaskBit(long[] mask, int row, int column) {
+        int index = row * MASK_EDGE + column;
+        mask[index >>> BIT_INDEX_BITS] |= 1L << (index & BIT_INDEX_MASK);
+    }
+
+    /**
+     * Persists the brightness values of the registry to its file, if glyphs were rendered since it was
+     * loaded. Called automatically when the process exits.
+     */
+    public void save() {
+        if (!modified || file == null) {
+            return;
+        }
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Logger.getGlobal().warning(String.format("Failed to create \"%s\"", directory));
+            return;
+        }
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(file)))) {
+            Map<Character, Double> snapshot = Map.copyOf(brightness);
+            output.writeInt(FILE_MAGIC);
+            output.writeInt(FILE_VERSION);
+            output.writeUTF(fontName);
+            output.writeInt(pixelResolution);
+            output.writeInt(snapshot.size());
+            for (Map.Entry<Character, Double> entry : snapshot.entrySet()) {
+                output.writeChar(entry.getKey());
+                output.writeDouble(entry.getValue());
+            }
+            modified = false;
+        } catch (IOException e) {
+            Logger.getGlobal().warning(String.format("Failed to write to \"%s\"", file));
+        }
+    }
+
+    /**
+     * Renders a glyph & calculates its brightness based on the proportion of white pixels.
+     *
+     * @param c The character of the glyph.
+     * @return The brightness of the glyph, between 0 and 1.
+     */
+    private double render(char c) {
+        boolean[][] boolArrayChar = CharConverter.convertToBoolArray(c, fontName, pixelResolution);
+        int countWhite = 0;
+        for (int row = 0; row < boolArrayChar.length; row++) {
+            for (int col = 0; col < boolArrayChar[row].length; col++) {
+                if (boolArrayChar[row][col]) {
+                    countWhite++;
+                }
+            }
+        }
+        modified = true;
+        return ((double) countWhite) / (pixelResolution * pixelResolution);
+    }
+
+    /**
+     * Renders a glyph & packs it into a binary mask, sampling the rendered pixels if the pixel resolution of
+     * the registry isn't MASK_EDGE.
+     *
+     * @param c The character of the glyph.
+     * @return The binary mask of the glyph.
+     */
+    private long[] renderMask(char c) {
+        boolean[][] boolArrayChar = CharConverter.convertToBoolArray(c, fontName, pixelResolution);
+        long[] mask = new long[MASK_WORDS];
+        for (int row = 0; row < MASK_EDGE; row++) {
+            for (int col = 0; col < MASK_EDGE; col++) {
+                if (boolArrayChar[row * pixelResolution / MASK_EDGE][col * pixelResolution / MASK_EDGE]) {
+                    setMaskBit(mask, row, col);
+                }
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Loads the previously persisted brightness values from the file of the registry, if it exists.
+     * A corrupted file, or one whose header doesn't match the format & the registry, is ignored & marked to
+     * be rewritten, & the glyphs are rendered again.
+     */
+    private void load() {
+        if (file == null || !file.isFile()) {
+            return;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)))) {
+            if (input.readInt() != FILE_MAGIC || input.readInt() != FILE_VERSION ||
+                    !input.readUTF().equals(fontName) || input.readInt() != pixelResolution) {
+                modified = true;
+                return;
+            }
+            int size = input.readInt();
+            for (int i = 0; i < size; i++) {
+                char c = input.readChar();
+                brightness.put(c, input.readDouble());
+            }
+        } catch (IOException e) {
+            brightness.clear();
+            modified = true;
+        }
+    }
+
+    /**
+     * Determines the file a registry is persisted to, in CACHE_DIRECTORY under the home directory of the
+     * user (user.home), or under the temporary directory (java.io.tmpdir) when the home directory isn't
+     * known, so the file is never written into the application or its source tree.
+     *
+     * @param fontName        The name of the font of the registry.
+     * @param pixelResolution The pixel resolution of the registry.
+     * @return The file of the registry, or null if neither directory can be determined.
+     */
+    private static File locateFile(String fontName, int pixelResolution) {
+        try {
+            String base = System.getProperty("user.home");
+            if (base == null || base.isEmpty()) {
+                base = System.getProperty("java.io.tmpdir");
+            }
+            if (base == null || base.isEmpty()) {
+                return null;
+            }
+            return new File(new File(base, CACHE_DIRECTORY), FILE_PREFIX + fontName.replaceAll(
+                    INVALID_FILE_NAME_CHARS, FILE_NAME_REPLACEMENT) + SEPARATOR + pixelResolution +
+                    FILE_EXTENSION);
+        } catch (SecurityException e) {
+            return null;
+        }
+    }
+}
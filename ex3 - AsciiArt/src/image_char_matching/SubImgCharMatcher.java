@@ -7,6 +7,9 @@ import java.util.*;
  * for the conversion of image sections to characters by comparing brightness levels, supporting operations
  * like adding or removing characters from the matching set, and performing histogram equalization on the
  * character set based on their brightness.
+ * Any printable, single-width character of the Basic Multilingual Plane can be matched (e.g. block elements,
+ * box-drawing & Braille characters), & character sets of many thousands of characters are supported:
+ * changing the set costs O(log(n)) per character, & matching a brightness level costs O(log(n)).
  */
 public class SubImgCharMatcher {
     /**
@@ -20,15 +23,43 @@ public class SubImgCharMatcher {
     public static final int FIRST_CHAR_RANGE = 32;
 
     /**
-     * The range of brightness values considered, typically 256 to represent the grayscale brightness from
-     * black to white.
+     * The number of equal-width brightness buckets of the lookup table used in quantized mode. A brightness
+     * level is matched by the character chosen for the center of its bucket, so the distance between the
+     * level & the brightness of the returned character exceeds the distance of the exact match by at most
+     * 1 / QUANTIZATION_LEVELS (twice the distance from the level to the center of its bucket).
      */
-    private static final int RANGE_BRIGHTNESS = 16 * 16;
+    public static final int QUANTIZATION_LEVELS = 4096;
 
     /**
-     * A list of characters considered for matching based on image brightness.
+     * The bounds (inclusive, in pairs) of the ranges of the Basic Multilingual Plane whose characters are
+     * East Asian wide or fullwidth, i.e. take two columns of a terminal: Hangul Jamo, the CJK radicals,
+     * symbols, kana & ideographs, Yi, the Hangul syllables & the CJK compatibility, vertical & fullwidth
+     * forms.
      */
-    private ArrayList<Character> charset;
+    private static final int[] WIDE_RANGES = {0x1100, 0x115F, 0x2329, 0x232A, 0x2E80, 0x303E, 0x3041, 0x33FF,
+            0x3400, 0x4DBF, 0x4E00, 0x9FFF, 0xA000, 0xA4CF, 0xA960, 0xA97F, 0xAC00, 0xD7A3, 0xF900, 0xFAFF,
+            0xFE10, 0xFE19, 0xFE30, 0xFE6F, 0xFF00, 0xFF60, 0xFFE0, 0xFFE6};
+
+    /**
+     * The offset of the center of a bucket of the lookup table from its lower bound, in buckets.
+     */
+    private static final double BUCKET_CENTER = 0.5;
+
+    /**
+     * The number of characters on each side of a brightness level which are compared by their shape in shape
+     * matching mode, so the chosen character keeps roughly the brightness of the tile.
+     */
+    private static final int SHAPE_CANDIDATES = 4;
+
+    /**
+     * A packed binary mask word with all of its bits set.
+     */
+    private static final long FULL_MASK_WORD = -1L;
+
+    /**
+     * The characters considered for matching based on image brightness, kept sorted.
+     */
+    private TreeSet<Character> charset;
 
     /**
      * A mapping of characters to their associated brightness values.
@@ -36,29 +67,69 @@ public class SubImgCharMatcher {
     private HashMap<Character, Double> dictBrightness;
 
     /**
-     * A mapping of characters to their overall brightness values before normalization.
+     * The process-wide registry of the brightness values of the glyphs before normalization, shared by all
+     * the matchers using the same font.
+     */
+    private final GlyphBrightnessRegistry glyphRegistry;
+
+    /**
+     * Whether brightness levels are matched through the fixed-size lookup table (quantized mode) rather than
+     * by an exact binary search.
+     */
+    private boolean quantized;
+
+    /**
+     * The lookup table of the quantized mode, where lookupTable[i] is the character matching the center of
+     * the i-th brightness bucket. Null when the quantized mode is off.
+     */
+    private char[] lookupTable;
+
+    /**
+     * A counted ordered multiset of the brightness values of the character set, mapping every brightness
+     * value to the number of characters having it. Adding & removing a value as well as accessing the
+     * minimal & maximal values all take O(log(n)).
+     */
+    private TreeMap<Double, Integer> brightnessCounts;
+
+    /**
+     * The distinct normalized brightness values of the character set after performing histogram
+     * equalization, sorted in ascending order so a brightness level can be matched by a binary search.
+     */
+    private double[] sortedBrightness;
+
+    /**
+     * The characters matching the values of sortedBrightness, where sortedChars[i] is the lowest character
+     * whose normalized brightness is sortedBrightness[i].
+     */
+    private char[] sortedChars;
+
+    /**
+     * All the characters of the character set sorted by their normalized brightness (& then by value), for
+     * the shape matching mode, which can choose any of the characters of the same brightness.
      */
-    private HashMap<Character, Double> allBrightness;
+    private char[] shapeChars;
 
     /**
-     * A cache for quick access to previously calculated character matches based on brightness.
+     * The normalized brightness values of shapeChars.
      */
-    private HashMap<Double, Character> cache;
+    private double[] shapeBrightness;
 
     /**
-     * A priority queue for maintaining the minimum brightness values encountered.
+     * The binary masks of shapeChars, MASK_WORDS longs per character, or null when the shape matching mode
+     * is off.
      */
-    private PriorityQueue<Double> minBrightHeap;
+    private long[] shapeMasks;
 
     /**
-     * A priority queue for maintaining the maximum brightness values encountered.
+     * Whether characters were added or removed since the last histogram equalization, i.e. whether the
+     * normalized brightness values (and the lookup table) are stale.
      */
-    private PriorityQueue<Double> maxBrightHeap;
+    private boolean dirty;
 
     /**
-     * A mapping of characters to their normalized brightness values after performing histogram equalization.
+     * The number of times the histogram equalization was actually recomputed.
      */
-    private HashMap<Character, Double> normalizedBrightness;
+    private long equalizationCount;
 
     /**
      * Constructs a SubImgCharMatcher with a specific set of characters. Initializes internal structures for
@@ -67,47 +138,172 @@ public class SubImgCharMatcher {
      * @param charset An array of characters to be included in the matching set.
      */
     public SubImgCharMatcher(char[] charset) {
-        this.charset = new ArrayList<Character>();
-        this.cache = new HashMap<>();
-        normalizedBrightness = new HashMap<>();
+        this(charset, GlyphBrightnessRegistry.getDefault());
+    }
 
-        allBrightness = new HashMap<>();
-        for (char c = FIRST_CHAR_RANGE; c <= LAST_CHAR_RANGE; c++) {
-            allBrightness.put(c, calculateBrightness(c));
-        }
-        maxBrightHeap = new PriorityQueue<>(Comparator.reverseOrder());
-        minBrightHeap = new PriorityQueue<>();
+    /**
+     * Constructs a SubImgCharMatcher with a specific set of characters, whose brightness values are taken
+     * from the given glyph registry. Only the glyphs of the given characters which weren't needed before are
+     * rendered.
+     *
+     * @param charset       An array of characters to be included in the matching set.
+     * @param glyphRegistry The registry of the brightness values of the glyphs.
+     */
+    public SubImgCharMatcher(char[] charset, GlyphBrightnessRegistry glyphRegistry) {
+        this.charset = new TreeSet<Character>();
+        this.glyphRegistry = glyphRegistry;
+        sortedBrightness = new double[0];
+        sortedChars = new char[0];
+        shapeBrightness = new double[0];
+        shapeChars = new char[0];
+
+        brightnessCounts = new TreeMap<>();
 
         dictBrightness = new HashMap<>();
         for (char c : charset) {
-            addCharUnSafe(c);
+            addChar(c);
         }
     }
 
     /**
-     * Determines and returns the best matching character for a specified image brightness level, utilizing
-     * caching for efficiency.
+     * Checks whether a character can be matched, i.e. it is a printable character of the Basic Multilingual
+     * Plane which takes exactly one cell of the console, ANSI & HTML grids. Unassigned, control, format
+     * (such as zero-width spaces), private-use & surrogate characters, combining marks, line & paragraph
+     * separators & East Asian wide characters (see WIDE_RANGES) are invalid. Symbols which some terminals
+     * draw two columns wide in emoji presentation (such as U+2614) aren't detected & are unsupported. All the
+     * characters between FIRST_CHAR_RANGE & LAST_CHAR_RANGE are valid.
+     *
+     * @param c The character to check.
+     * @return true if the character can be matched, false otherwise.
+     */
+    public static boolean isValidChar(char c) {
+        switch (Character.getType(c)) {
+            case Character.UNASSIGNED:
+            case Character.CONTROL:
+            case Character.FORMAT:
+            case Character.PRIVATE_USE:
+            case Character.SURROGATE:
+            case Character.NON_SPACING_MARK:
+            case Character.ENCLOSING_MARK:
+            case Character.COMBINING_SPACING_MARK:
+            case Character.LINE_SEPARATOR:
+            case Character.PARAGRAPH_SEPARATOR:
+                return false;
+            default:
+                return !isWide(c);
+        }
+    }
+
+    /**
+     * Checks whether a character is East Asian wide or fullwidth, i.e. in one of WIDE_RANGES.
+     *
+     * @param c The character to check.
+     * @return true if the character takes two columns of a terminal, false otherwise.
+     */
+    private static boolean isWide(char c) {
+        for (int i = 0; i < WIDE_RANGES.length; i += 2) {
+            if (c >= WIDE_RANGES[i] && c <= WIDE_RANGES[i + 1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines and returns the best matching character for a specified image brightness level. In exact
+     * mode this is a binary search over the character set, & in quantized mode a single read from the
+     * lookup table (see QUANTIZATION_LEVELS for its accuracy). Doesn't modify the matcher, so it may be
+     * called concurrently from several threads, as long as the character set isn't modified at the same time.
      *
      * @param brightness The target brightness level, normalized between 0 and 1.
      * @return The character that best matches the given brightness level.
      */
     public char getCharByImageBrightness(double brightness) {
-        if (cache.containsKey(brightness)) {
-            return cache.get(brightness);
+        char[] table = lookupTable;
+        if (table != null) {
+            int bucket = (int) (brightness * QUANTIZATION_LEVELS);
+            return table[Math.max(0, Math.min(bucket, QUANTIZATION_LEVELS - 1))];
         }
-        double minDistance = Double.POSITIVE_INFINITY;
-        char resultChar = Character.MAX_VALUE;
-        for (char c : charset) {
-            if (getDistance(brightness, c) < minDistance) {
-                minDistance = getDistance(brightness, c);
-                resultChar = c;
-            } else if ((getDistance(brightness, c) <= minDistance) && (c < resultChar)) {
-                minDistance = getDistance(brightness, c);
-                resultChar = c;
+        return findClosestChar(brightness);
+    }
+
+    /**
+     * Turns the quantized mode on or off. In quantized mode, brightness levels are matched through a lookup
+     * table of QUANTIZATION_LEVELS buckets, which is rebuilt on every histogram equalization.
+     *
+     * @param quantized Whether to use the quantized mode.
+     */
+    public void setQuantized(boolean quantized) {
+        this.quantized = quantized;
+        lookupTable = quantized ? buildLookupTable() : null;
+    }
+
+    /**
+     * Checks whether the matcher is in quantized mode.
+     *
+     * @return true if brightness levels are matched through the lookup table, false otherwise.
+     */
+    public boolean isQuantized() {
+        return quantized;
+    }
+
+    /**
+     * Determines the best matching character for a tile by its shape: among the characters closest to the
+     * brightness of the tile, the one whose glyph mask has the smallest Hamming distance from the mask of the
+     * tile (ties are broken by brightness & then towards the lower character). A tile without any structure
+     * (a uniform mask), or a matcher not in shape matching mode, is matched by brightness only.
+     *
+     * @param brightness The brightness level of the tile, normalized between 0 and 1.
+     * @param tileMask   The binary mask of the tile, MASK_WORDS longs whose bits are set for the cells
+     *                   brighter than the tile.
+     * @return The character that best matches the tile.
+     */
+    public char getCharByImageShape(double brightness, long[] tileMask) {
+        long[] masks = shapeMasks;
+        char[] chars = shapeChars;
+        double[] values = shapeBrightness;
+        if (masks == null || chars.length == 0 || isUniform(tileMask)) {
+            return getCharByImageBrightness(brightness);
+        }
+
+        int index = Arrays.binarySearch(values, brightness);
+        int position = index >= 0 ? index : -index - 1;
+        int first = Math.max(0, position - SHAPE_CANDIDATES);
+        int last = Math.min(chars.length, position + SHAPE_CANDIDATES);
+        int best = first;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = first; i < last; i++) {
+            int offset = i * GlyphBrightnessRegistry.MASK_WORDS;
+            int distance = 0;
+            for (int word = 0; word < GlyphBrightnessRegistry.MASK_WORDS; word++) {
+                distance += Long.bitCount(masks[offset + word] ^ tileMask[word]);
+            }
+            if (distance < bestDistance || (distance == bestDistance &&
+                    isCloser(brightness, values[i], chars[i], values[best], chars[best]))) {
+                best = i;
+                bestDistance = distance;
             }
         }
-        cache.put(brightness, resultChar);
-        return resultChar;
+        return chars[best];
+    }
+
+    /**
+     * Turns the shape matching mode on or off. In shape matching mode the glyph masks of the character set
+     * are rendered (once per process) & kept packed, & getCharByImageShape compares tiles by their shape.
+     *
+     * @param shapeMatching Whether to use the shape matching mode.
+     */
+    public void setShapeMatching(boolean shapeMatching) {
+        shapeMasks = shapeMatching ? buildShapeMasks() : null;
+    }
+
+    /**
+     * Checks whether the matcher is in shape matching mode.
+     *
+     * @return true if tiles can be matched by their shape, false otherwise.
+     */
+    public boolean isShapeMatching() {
+        return shapeMasks != null;
     }
 
     /**
@@ -135,114 +331,205 @@ public class SubImgCharMatcher {
     }
 
     /**
-     * Returns the current set of characters in the matcher, sorted by their ASCII values.
+     * Returns the current set of characters in the matcher, sorted by their values.
      *
      * @return An array of characters currently used in the matching set.
      */
     public char[] getCharSet() {
         char[] set = new char[charset.size()];
-
-        for (int i = 0; i < set.length; i++) {
-            set[i] = charset.get(i);
+        int i = 0;
+        for (char c : charset) {
+            set[i++] = c;
         }
-
-        Arrays.sort(set);
         return set;
     }
 
     /**
      * Performs histogram equalization on the characters' brightness values to enhance contrast by
-     * normalizing brightness across the available range.
+     * normalizing brightness across the available range. The normalized values are stored sorted together
+     * with their characters, so matching a brightness level only requires a binary search. When all the
+     * characters have the same brightness, they are all normalized to 0.
+     * The equalization is recomputed only if characters were added or removed since the last call, otherwise
+     * the previous results remain valid & this method returns immediately.
      */
     public void histogramEqualization() {
-        double maxBrightness = maxBrightHeap.peek();
-        double minBrightness = minBrightHeap.peek();
-        normalizedBrightness.clear();
-        for (char c : charset) {
-            double newCharBrightness = (dictBrightness.get(c) - minBrightness) /
-                    (maxBrightness - minBrightness);
-            normalizedBrightness.put(c, newCharBrightness);
+        if (!dirty) {
+            return;
+        }
+        double maxBrightness = brightnessCounts.lastKey();
+        double minBrightness = brightnessCounts.firstKey();
+        double range = maxBrightness - minBrightness;
+
+        Character[] byBrightness = charset.toArray(new Character[0]);
+        Arrays.sort(byBrightness, Comparator.comparingDouble((Character c) -> dictBrightness.get(c))
+                .thenComparing(Comparator.naturalOrder()));
+
+        double[] brightness = new double[byBrightness.length];
+        char[] chars = new char[byBrightness.length];
+        double[] allBrightness = new double[byBrightness.length];
+        char[] allChars = new char[byBrightness.length];
+        int distinct = 0;
+        for (int i = 0; i < byBrightness.length; i++) {
+            char c = byBrightness[i];
+            double newCharBrightness = range == 0 ? 0 : (dictBrightness.get(c) - minBrightness) / range;
+            allBrightness[i] = newCharBrightness;
+            allChars[i] = c;
+            // keep only the lowest character of every brightness value, since it wins every tie.
+            if (distinct == 0 || brightness[distinct - 1] != newCharBrightness) {
+                brightness[distinct] = newCharBrightness;
+                chars[distinct] = c;
+                distinct++;
+            }
         }
+        sortedBrightness = Arrays.copyOf(brightness, distinct);
+        sortedChars = Arrays.copyOf(chars, distinct);
+        shapeBrightness = allBrightness;
+        shapeChars = allChars;
+        if (quantized) {
+            lookupTable = buildLookupTable();
+        }
+        if (shapeMasks != null) {
+            shapeMasks = buildShapeMasks();
+        }
+        dirty = false;
+        equalizationCount++;
+    }
+
+    /**
+     * Retrieves the number of times the histogram equalization was actually recomputed, i.e. the number of
+     * calls to histogramEqualization which followed a change of the character set.
+     *
+     * @return The number of recomputed equalizations.
+     */
+    public long getEqualizationCount() {
+        return equalizationCount;
     }
 
     /**
      * Adds a character to the matching set without checking for its existence, directly updating the
-     * brightness mappings and queues.
+     * brightness mappings and the brightness multiset.
      *
      * @param c The character to add.
      */
     private void addCharUnSafe(char c) {
-        cache.clear();
+        dirty = true;
         charset.add(c);
-        double brightness = 0;
-        if (!allBrightness.containsKey(c)) {
-            //update the global (un-normalized) brightness cache
-            brightness = calculateBrightness(c);
-            allBrightness.put(c, brightness);
-        } else {
-            brightness = allBrightness.get(c);
-        }
+        double brightness = glyphRegistry.getBrightness(c);
         dictBrightness.put(c, brightness);
-        maxBrightHeap.add(brightness);
-        minBrightHeap.add(brightness);
+        brightnessCounts.merge(brightness, 1, Integer::sum);
     }
 
     /**
      * Removes a character from the matching set without checking for its existence, directly updating the
-     * brightness mappings and queues.
+     * brightness mappings and the brightness multiset.
      *
      * @param c The character to remove.
      */
     private void removeUnSafeChar(char c) {
-        cache.clear();
-        charset.remove((Object) c); // without the casting, java converts c to an index.
+        dirty = true;
+        charset.remove(c);
         double brightness = dictBrightness.get(c);
         dictBrightness.remove(c);
-        maxBrightHeap.remove(brightness);
-        minBrightHeap.remove(brightness);
+        // drop the value from the multiset when its last character is removed.
+        brightnessCounts.computeIfPresent(brightness, (value, count) -> count > 1 ? count - 1 : null);
     }
 
     /**
-     * Calculates the distance between a given brightness level and the normalized brightness of a character.
+     * Finds the character whose normalized brightness is the closest to a given brightness level, using a
+     * binary search over the sorted normalized brightness values. When two characters are equally close,
+     * the lower one is returned.
      *
      * @param brightness The target brightness level.
-     * @param c          The character whose brightness distance is to be calculated.
-     * @return The absolute difference between the normalized brightness of the character and the target
-     * brightness.
+     * @return The closest character, or Character.MAX_VALUE if the character set wasn't equalized yet.
      */
-    private double getDistance(double brightness, char c) {
-        return Math.abs(normalizedBrightness.get(c) - brightness);
+    private char findClosestChar(double brightness) {
+        double[] values = sortedBrightness;
+        char[] chars = sortedChars;
+        if (values.length == 0) {
+            return Character.MAX_VALUE;
+        }
+
+        int index = Arrays.binarySearch(values, brightness);
+        if (index >= 0) {
+            return chars[index];
+        }
+        int above = -index - 1;
+        if (above == 0) {
+            return chars[0];
+        }
+        if (above == values.length) {
+            return chars[values.length - 1];
+        }
+        int below = above - 1;
+        double distanceBelow = brightness - values[below];
+        double distanceAbove = values[above] - brightness;
+        if (distanceBelow < distanceAbove) {
+            return chars[below];
+        }
+        if (distanceAbove < distanceBelow) {
+            return chars[above];
+        }
+        return (char) Math.min(chars[below], chars[above]);
     }
 
     /**
-     * Calculates the brightness of a character representation based on the proportion of "white" (true)
-     * pixels in a boolean array representation.
+     * Checks whether a binary mask has no structure, i.e. all of its bits are equal.
      *
-     * @param boolArrayChar A 2D boolean array representing the character in a binary (black and white)
-     *                      format.
-     * @return The normalized brightness value of the character.
+     * @param mask The packed binary mask.
+     * @return true if all the bits of the mask are equal, false otherwise.
      */
-    private double calculateBrightness(boolean[][] boolArrayChar) {
-        int countWhite = 0;
-        for (int row = 0; row < boolArrayChar.length; row++) {
-            for (int col = 0; col < boolArrayChar[row].length; col++) {
-                if (boolArrayChar[row][col]) {
-                    countWhite++;
-                }
+    private static boolean isUniform(long[] mask) {
+        for (long word : mask) {
+            if (word != mask[0] || (word != 0 && word != FULL_MASK_WORD)) {
+                return false;
             }
         }
-        return ((double) countWhite) / RANGE_BRIGHTNESS;
+        return true;
+    }
+
+    /**
+     * Checks whether a character is a better match for a brightness level than another character, i.e. its
+     * brightness is closer to the level, or equally close & it is the lower character.
+     *
+     * @param brightness The target brightness level.
+     * @param value      The normalized brightness of the character.
+     * @param c          The character.
+     * @param otherValue The normalized brightness of the other character.
+     * @param other      The other character.
+     * @return true if the character is a better match than the other character, false otherwise.
+     */
+    private static boolean isCloser(double brightness, double value, char c, double otherValue, char other) {
+        double distance = Math.abs(brightness - value);
+        double otherDistance = Math.abs(brightness - otherValue);
+        return distance < otherDistance || (distance == otherDistance && c < other);
+    }
+
+    /**
+     * Builds the packed binary masks of the characters of shapeChars, in the same order.
+     *
+     * @return The masks, MASK_WORDS longs per character.
+     */
+    private long[] buildShapeMasks() {
+        char[] chars = shapeChars;
+        long[] masks = new long[chars.length * GlyphBrightnessRegistry.MASK_WORDS];
+        for (int i = 0; i < chars.length; i++) {
+            System.arraycopy(glyphRegistry.getMask(chars[i]), 0, masks,
+                    i * GlyphBrightnessRegistry.MASK_WORDS, GlyphBrightnessRegistry.MASK_WORDS);
+        }
+        return masks;
     }
 
     /**
-     * Converts a character into a boolean array and calculates its brightness based on the proportion of
-     * white pixels.
+     * Builds the lookup table of the quantized mode from the current normalized brightness values, matching
+     * the center of every brightness bucket exactly.
      *
-     * @param c The character to be converted and analyzed for brightness.
-     * @return The brightness of the character, normalized between 0 and 1.
+     * @return The lookup table.
      */
-    private double calculateBrightness(char c) {
-        boolean[][] boolArrayChar = CharConverter.convertToBoolArray(c);
-        return calculateBrightness(boolArrayChar);
+    private char[] buildLookupTable() {
+        char[] table = new char[QUANTIZATION_LEVELS];
+        for (int bucket = 0; bucket < QUANTIZATION_LEVELS; bucket++) {
+            table[bucket] = findClosestChar((bucket + BUCKET_CENTER) / QUANTIZATION_LEVELS);
+        }
+        return table;
     }
 }
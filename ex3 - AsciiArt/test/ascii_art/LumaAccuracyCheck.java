@@ -0,0 +1,215 @@
+package ascii_art;
+
+import image.Image;
+import image.ImageDecoder;
+import image.ImageManipulator;
+import image.IntegralImage;
+import image.TileGrid;
+import image_char_matching.SubImgCharMatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A differential check of the fixed-point grayscale conversion against the original double one. It checks
+ * that every one of the 2^24 colors & the average of every tile of the given images (padded, at every
+ * resolution checked) differ from the double path by less than TOLERANCE in normalized brightness, & then
+ * converts the images both ways & counts the characters which differ. Such a character is expected only
+ * where the two brightness values of its tile straddle a decision boundary of the matcher, which the check
+ * verifies for every one of them. Run from the project directory with "java ascii_art.LumaAccuracyCheck
+ * [image files or directories]", by default over the corpus of cat.jpeg & the flat, gradient & high-contrast
+ * images of test/images; the exit status is 1 if anything exceeds the tolerance.
+ */
+class LumaAccuracyCheck {
+
+    /**
+     * The maximal difference in normalized brightness between the fixed-point & the double paths, 2^-16.
+     */
+    private static final double TOLERANCE = 1.0 / ImageManipulator.GRAY_SCALE;
+
+    /**
+     * The images & directories of images converted when none are given.
+     */
+    private static final String[] DEFAULT_CORPUS = {"cat.jpeg", "test/images"};
+
+    /**
+     * The resolutions every image is converted with, when valid for it.
+     */
+    private static final int[] RESOLUTIONS = {64, 128, 256};
+
+    /**
+     * The character sets every image is converted with: the default one & all the printable ASCII
+     * characters, whose decision boundaries are much denser.
+     */
+    private static final char[][] CHARSETS = {"0123456789".toCharArray(), printableAscii()};
+
+    /**
+     * The number of distinct 24 bit colors.
+     */
+    private static final int COLORS = 1 << 24;
+
+    /**
+     * The exit status of a failed check.
+     */
+    private static final int FAILURE_STATUS = 1;
+
+    /**
+     * Runs the check & prints the worst deviations & the number of differing characters.
+     *
+     * @param args The paths of the images (or directories of images) to convert, or none for DEFAULT_CORPUS.
+     * @throws IOException If an image can't be read.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean passed = checkPixels();
+        for (String path : listImages(args.length == 0 ? DEFAULT_CORPUS : args)) {
+            Image image = ImageManipulator.padImage(new Image(path));
+            double[] reference = buildReferenceTable(image);
+            IntegralImage integralImage = new IntegralImage(image);
+            for (char[] charset : CHARSETS) {
+                SubImgCharMatcher matcher = new SubImgCharMatcher(charset);
+                matcher.histogramEqualization();
+                for (int resolution : RESOLUTIONS) {
+                    if (ImageManipulator.isValidResolution(image, resolution)) {
+                        passed &= checkArt(path, image, reference, integralImage, matcher, charset.length,
+                                resolution);
+                    }
+                }
+            }
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(FAILURE_STATUS);
+        }
+    }
+
+    /**
+     * Checks the conversion of every 24 bit color.
+     *
+     * @return true if every color is within the tolerance, false otherwise.
+     */
+    private static boolean checkPixels() {
+        double worst = 0;
+        for (int rgb = 0; rgb < COLORS; rgb++) {
+            double fixed = (double) ImageManipulator.RGB2GrayFixed(rgb) / ImageManipulator.GRAY_SCALE;
+            worst = Math.max(worst, Math.abs(fixed - ImageManipulator.RGB2Gray(rgb)) /
+                    ImageManipulator.MAX_GRAYSCALE_INTENSITY);
+        }
+        System.out.println(String.format("%d colors: worst difference %.3g (tolerance %.3g)", COLORS, worst,
+                TOLERANCE));
+        return worst < TOLERANCE;
+    }
+
+    /**
+     * Converts an image at a single resolution both ways & compares the brightness of every tile & the
+     * characters chosen for it.
+     *
+     * @param path          The path of the image, for the report.
+     * @param image         The padded image.
+     * @param reference     The summed-area table of the image in double grayscale values.
+     * @param integralImage The fixed-point summed-area table of the image.
+     * @param matcher       The matcher, already equalized.
+     * @param charsetSize   The number of characters of the matcher, for the report.
+     * @param resolution    The resolution.
+     * @return true if every tile is within the tolerance & every differing character is explained by it.
+     */
+    private static boolean checkArt(String path, Image image, double[] reference, IntegralImage integralImage,
+                                    SubImgCharMatcher matcher, int charsetSize, int resolution) {
+        char[][] art = new AsciiArtAlgorithm(integralImage, resolution, matcher).run();
+        TileGrid grid = new TileGrid(image.getWidth(), image.getHeight(), resolution);
+        int stride = image.getWidth() + 1;
+        double worst = 0;
+        int differing = 0;
+        int unexplained = 0;
+        for (int row = 0; row < grid.getRows(); row++) {
+            for (int col = 0; col < grid.getColumns(); col++) {
+                int top = grid.getTop(row);
+                int left = grid.getLeft(col);
+                int bottom = top + grid.getTileHeight(row);
+                int right = left + grid.getTileWidth(col);
+                double sum = reference[bottom * stride + right] - reference[top * stride + right] -
+                        reference[bottom * stride + left] + reference[top * stride + left];
+                double expected = sum / ((double) ImageManipulator.MAX_GRAYSCALE_INTENSITY *
+                        grid.getTileHeight(row) * grid.getTileWidth(col));
+                double actual = integralImage.getAverageBrightness(top, left, grid.getTileHeight(row),
+                        grid.getTileWidth(col));
+                worst = Math.max(worst, Math.abs(actual - expected));
+
+                char expectedChar = matcher.getCharByImageBrightness(expected);
+                if (art[row][col] != expectedChar) {
+                    differing++;
+                    // the characters may only differ by a boundary between the two brightness values.
+                    if (Math.abs(actual - expected) >= TOLERANCE ||
+                            matcher.getCharByImageBrightness(actual) != art[row][col]) {
+                        unexplained++;
+                    }
+                }
+            }
+        }
+        System.out.println(String.format("%s, %d chars, resolution %d: worst tile difference %.3g, " +
+                        "%d of %d characters differ, %d unexplained", path, charsetSize, resolution, worst,
+                differing, grid.getRows() * grid.getColumns(), unexplained));
+        return worst < TOLERANCE && unexplained == 0;
+    }
+
+    /**
+     * Lists the images to convert, replacing every directory by the image files in it.
+     *
+     * @param paths The paths of images & directories of images.
+     * @return The paths of the images, those of every directory sorted by name.
+     */
+    private static List<String> listImages(String[] paths) {
+        List<String> images = new ArrayList<>();
+        for (String path : paths) {
+            File[] files = new File(path).listFiles();
+            if (files == null) {
+                images.add(path);
+                continue;
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isFile() && ImageDecoder.hasReadableSuffix(file.getName())) {
+                    images.add(file.getPath());
+                }
+            }
+        }
+        return images;
+    }
+
+    /**
+     * Builds the summed-area table of an image the original way, from double grayscale values.
+     *
+     * @param image The image.
+     * @return The table, of (height + 1) x (width + 1) entries, row by row.
+     */
+    private static double[] buildReferenceTable(Image image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double[] table = new double[(height + 1) * (width + 1)];
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.copyRow(y, row);
+            double rowSum = 0;
+            for (int x = 0; x < width; x++) {
+                rowSum += ImageManipulator.RGB2Gray(row[x]);
+                table[(y + 1) * (width + 1) + x + 1] = table[y * (width + 1) + x + 1] + rowSum;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Builds the characters the matcher accepts by default, all the printable ASCII characters.
+     *
+     * @return The characters.
+     */
+    private static char[] printableAscii() {
+        char[] chars = new char[SubImgCharMatcher.LAST_CHAR_RANGE - SubImgCharMatcher.FIRST_CHAR_RANGE + 1];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (SubImgCharMatcher.FIRST_CHAR_RANGE + i);
+        }
+        return chars;
+    }
+}
@@ -0,0 +1,175 @@
+package image;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A benchmark of the kernels of the brightness stage. Every loop of the kernels is timed on the same rows
+ * with the scalar kernel & (where it can be loaded) the Vector API kernel, after checking the two compute
+ * exactly the same values, & then the whole stage (building a summed-area table & a pyramid of an image) is
+ * timed with the kernel ImageManipulator selected. Run from the project directory with
+ * "java --add-modules jdk.incubator.vector image.GrayKernelBenchmark" (with the src-vector classes on the
+ * class path), & again with "-Dascii_art.vector=false" for the whole stage on the scalar kernel; the exit
+ * status is 1 if the kernels differ.
+ */
+class GrayKernelBenchmark {
+
+    /**
+     * The edge of the square image of random pixels the kernels are timed on.
+     */
+    private static final int EDGE = 2048;
+
+    /**
+     * The number of untimed rounds, letting the JIT compile the kernels.
+     */
+    private static final int WARMUP_ROUNDS = 20;
+
+    /**
+     * The number of timed rounds, whose median time is reported.
+     */
+    private static final int TIMED_ROUNDS = 21;
+
+    /**
+     * The seed of the random pixels, so every run times the same image.
+     */
+    private static final long SEED = 17;
+
+    /**
+     * The number of nanoseconds in a millisecond.
+     */
+    private static final double NANOS_PER_MILLI = 1e6;
+
+    /**
+     * The exit status of a failed check.
+     */
+    private static final int FAILURE_STATUS = 1;
+
+    /**
+     * Accumulates the results of the timed loops, so the JIT can't eliminate them.
+     */
+    private static long sink;
+
+    /**
+     * A single timed loop over the whole image.
+     */
+    private interface Stage {
+
+        /**
+         * Runs the loop once.
+         */
+        void run();
+    }
+
+    /**
+     * Runs the benchmark & prints the median time of every stage for every kernel.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        int[] pixels = new Random(SEED).ints(EDGE * EDGE).toArray();
+        GrayKernel scalar = new ScalarGrayKernel();
+        GrayKernel vector = ImageManipulator.loadVectorKernel();
+        System.out.println(String.format("%dx%d pixels, %s", EDGE, EDGE,
+                vector == null ? "Vector API kernel unavailable" : "Vector API kernel loaded"));
+        if (vector != null && !sameResults(scalar, vector, pixels)) {
+            System.out.println("FAILED: the kernels differ");
+            System.exit(FAILURE_STATUS);
+        }
+        int[] grayPixels = new int[pixels.length];
+        scalar.toGray(pixels, grayPixels, pixels.length);
+        GrayKernel[] kernels = vector == null ? new GrayKernel[]{scalar} : new GrayKernel[]{scalar, vector};
+        for (GrayKernel kernel : kernels) {
+            String name = kernel.getClass().getSimpleName();
+            int[] gray = new int[EDGE];
+            int[] lower = new int[EDGE];
+            long[] table = new long[2 * EDGE];
+            report(name, "luma", () -> {
+                for (int row = 0; row < EDGE; row++) {
+                    System.arraycopy(pixels, row * EDGE, gray, 0, EDGE);
+                    kernel.toGray(gray, gray, EDGE);
+                }
+                sink += gray[0];
+            });
+            report(name, "row sums", () -> {
+                for (int row = 0; row < EDGE; row++) {
+                    sink += kernel.sum(grayPixels, row * EDGE, row * EDGE + EDGE);
+                }
+            });
+            report(name, "add rows (int)", () -> {
+                for (int row = 0; row < EDGE; row++) {
+                    kernel.addRow(lower, gray, EDGE);
+                }
+                sink += lower[0];
+            });
+            report(name, "add rows (long)", () -> {
+                for (int row = 0; row < EDGE; row++) {
+                    kernel.addRow(table, EDGE, 0, EDGE);
+                }
+                sink += table[EDGE];
+            });
+        }
+
+        Image image = new Image(pixels, EDGE, EDGE);
+        String name = ImageManipulator.getKernelName();
+        report(name, "summed-area table", () -> sink += new IntegralImage(image).getWidth());
+        report(name, "pyramid", () -> sink += new BrightnessPyramid(image).getWidth());
+        System.out.println("PASSED");
+    }
+
+    /**
+     * Checks that two kernels compute exactly the same values for every loop, on every row of the pixels &
+     * at unaligned offsets.
+     *
+     * @param scalar The scalar kernel.
+     * @param vector The Vector API kernel.
+     * @param pixels The pixels, EDGE rows of EDGE pixels.
+     * @return true if the kernels computed the same values, false otherwise.
+     */
+    private static boolean sameResults(GrayKernel scalar, GrayKernel vector, int[] pixels) {
+        int[] expected = new int[pixels.length];
+        int[] actual = new int[pixels.length];
+        scalar.toGray(pixels, expected, pixels.length);
+        vector.toGray(pixels, actual, pixels.length);
+        if (!Arrays.equals(expected, actual)) {
+            return false;
+        }
+        for (int from = 0; from < EDGE; from += EDGE / 16 + 1) {
+            if (scalar.sum(expected, from, pixels.length - from) != vector.sum(expected, from,
+                    pixels.length - from)) {
+                return false;
+            }
+        }
+        int[] expectedRow = Arrays.copyOf(expected, EDGE - 1);
+        int[] actualRow = Arrays.copyOf(expected, EDGE - 1);
+        scalar.addRow(expectedRow, actual, EDGE - 1);
+        vector.addRow(actualRow, actual, EDGE - 1);
+        long[] expectedTable = new long[2 * EDGE];
+        Arrays.setAll(expectedTable, i -> expected[i]);
+        long[] actualTable = expectedTable.clone();
+        scalar.addRow(expectedTable, EDGE + 1, 1, EDGE - 1);
+        vector.addRow(actualTable, EDGE + 1, 1, EDGE - 1);
+        return Arrays.equals(expectedRow, actualRow) && Arrays.equals(expectedTable, actualTable);
+    }
+
+    /**
+     * Times a stage & prints its median time.
+     *
+     * @param kernel The name of the kernel running the stage.
+     * @param name   The name of the stage.
+     * @param stage  The stage.
+     */
+    private static void report(String kernel, String name, Stage stage) {
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            stage.run();
+        }
+        long[] times = new long[TIMED_ROUNDS];
+        for (int round = 0; round < TIMED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            stage.run();
+            times[round] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        System.out.println(String.format("%-18s %-18s %8.3f ms", kernel, name,
+                times[TIMED_ROUNDS / 2] / NANOS_PER_MILLI));
+    }
+}
@@ -0,0 +1,216 @@
+package image_char_matching;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A differential check of SubImgCharMatcher against the original linear scan over the character set. For
+ * several character sets (including sets edited by adding & removing characters), every brightness level
+ * of a fine grid, every normalized brightness of a character & every midpoint between two of them is
+ * matched both ways: the exact mode must return exactly the character of the linear scan, & the quantized
+ * mode a character at most 1 / QUANTIZATION_LEVELS further from the level.
+ * Run with "java image_char_matching.MatcherAccuracyCheck"; the exit status is 1 if any level violates its
+ * tolerance.
+ */
+class MatcherAccuracyCheck {
+
+    /**
+     * The number of steps of the grid of brightness levels between 0 & 1.
+     */
+    private static final int GRID_STEPS = 100_000;
+
+    /**
+     * The number of random character sets checked in addition to the fixed ones.
+     */
+    private static final int RANDOM_SETS = 20;
+
+    /**
+     * The seed of the random character sets, so every run checks the same sets.
+     */
+    private static final long SEED = 7;
+
+    /**
+     * The tolerance of the quantized mode, in normalized brightness.
+     */
+    private static final double QUANTIZED_TOLERANCE = 1.0 / SubImgCharMatcher.QUANTIZATION_LEVELS;
+
+    /**
+     * The exit status of a failed check.
+     */
+    private static final int FAILURE_STATUS = 1;
+
+    /**
+     * Runs the check & prints the worst deviation of every character set.
+     *
+     * @param args Not used.
+     */
+    public static void main(String[] args) {
+        boolean passed = true;
+        passed &= check("digits", "0123456789".toCharArray(), new char[0], new char[0]);
+        char[] all = range(SubImgCharMatcher.FIRST_CHAR_RANGE, SubImgCharMatcher.LAST_CHAR_RANGE);
+        passed &= check("all", all, new char[0], new char[0]);
+        passed &= check("all, edited", all, "abc{|}~".toCharArray(), "\u00e9\u2588".toCharArray());
+
+        Random random = new Random(SEED);
+        for (int i = 0; i < RANDOM_SETS; i++) {
+            char[] set = new char[1 + random.nextInt(all.length)];
+            for (int j = 0; j < set.length; j++) {
+                set[j] = all[random.nextInt(all.length)];
+            }
+            char[] removed = new char[random.nextInt(set.length)];
+            for (int j = 0; j < removed.length; j++) {
+                removed[j] = set[random.nextInt(set.length)];
+            }
+            passed &= check("random " + i, set, removed, new char[0]);
+        }
+        System.out.println(passed ? "PASSED" : "FAILED");
+        if (!passed) {
+            System.exit(FAILURE_STATUS);
+        }
+    }
+
+    /**
+     * Checks a single character set, built from an initial set & then edited.
+     *
+     * @param name    The name of the set, for the report.
+     * @param initial The initial characters of the set.
+     * @param removed The characters removed after the set was built.
+     * @param added   The characters added after the removals.
+     * @return true if every level is within its tolerance, false otherwise.
+     */
+    private static boolean check(String name, char[] initial, char[] removed, char[] added) {
+        SubImgCharMatcher matcher = new SubImgCharMatcher(initial);
+        for (char c : removed) {
+            matcher.removeChar(c);
+        }
+        for (char c : added) {
+            matcher.addChar(c);
+        }
+        char[] charset = matcher.getCharSet();
+        if (charset.length == 0) {
+            return true;
+        }
+        double[] normalized = normalize(charset);
+
+        SubImgCharMatcher quantized = new SubImgCharMatcher(charset);
+        quantized.setQuantized(true);
+        matcher.histogramEqualization();
+        quantized.histogramEqualization();
+
+        int exactMismatches = 0;
+        double worstQuantized = 0;
+        double[] levels = levels(normalized);
+        for (double level : levels) {
+            char expected = linearScan(charset, normalized, level);
+            if (matcher.getCharByImageBrightness(level) != expected) {
+                exactMismatches++;
+            }
+            char approximate = quantized.getCharByImageBrightness(level);
+            double excess = Math.abs(level - valueOf(charset, normalized, approximate))
+                    - Math.abs(level - valueOf(charset, normalized, expected));
+            worstQuantized = Math.max(worstQuantized, excess);
+        }
+        boolean passed = exactMismatches == 0 && worstQuantized <= QUANTIZED_TOLERANCE;
+        System.out.println(String.format("%-12s %3d chars %7d levels: exact mismatches %d, quantized worst " +
+                "excess %.6f (tolerance %.6f)", name, charset.length, levels.length, exactMismatches,
+                worstQuantized, QUANTIZED_TOLERANCE));
+        return passed;
+    }
+
+    /**
+     * Normalizes the brightness values of a character set linearly to [0, 1], as the equalization does.
+     *
+     * @param charset The characters.
+     * @return The normalized brightness of every character, in the order of the characters.
+     */
+    private static double[] normalize(char[] charset) {
+        GlyphBrightnessRegistry registry = GlyphBrightnessRegistry.getDefault();
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (char c : charset) {
+            min = Math.min(min, registry.getBrightness(c));
+            max = Math.max(max, registry.getBrightness(c));
+        }
+        double[] normalized = new double[charset.length];
+        for (int i = 0; i < charset.length; i++) {
+            normalized[i] = max == min ? 0 : (registry.getBrightness(charset[i]) - min) / (max - min);
+        }
+        return normalized;
+    }
+
+    /**
+     * Builds the levels to check: a fine grid, the normalized brightness of every character & the midpoints
+     * between every two consecutive characters.
+     *
+     * @param normalized The normalized brightness values.
+     * @return The levels to check.
+     */
+    private static double[] levels(double[] normalized) {
+        double[] sorted = normalized.clone();
+        Arrays.sort(sorted);
+        double[] levels = new double[GRID_STEPS + 1 + 2 * sorted.length];
+        int i = 0;
+        for (int step = 0; step <= GRID_STEPS; step++) {
+            levels[i++] = (double) step / GRID_STEPS;
+        }
+        for (int j = 0; j < sorted.length; j++) {
+            levels[i++] = sorted[j];
+            levels[i++] = j + 1 < sorted.length ? (sorted[j] + sorted[j + 1]) / 2 : sorted[j];
+        }
+        return levels;
+    }
+
+    /**
+     * The original matching: a linear scan over the character set for the closest normalized brightness,
+     * breaking ties towards the lower character.
+     *
+     * @param charset    The characters.
+     * @param normalized The normalized brightness of every character.
+     * @param level      The brightness level to match.
+     * @return The closest character.
+     */
+    private static char linearScan(char[] charset, double[] normalized, double level) {
+        char best = charset[0];
+        double bestDistance = Math.abs(level - normalized[0]);
+        for (int i = 1; i < charset.length; i++) {
+            double distance = Math.abs(level - normalized[i]);
+            if (distance < bestDistance || (distance == bestDistance && charset[i] < best)) {
+                best = charset[i];
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Finds the normalized brightness of a character of the set.
+     *
+     * @param charset    The characters.
+     * @param normalized The normalized brightness of every character.
+     * @param c          The character.
+     * @return The normalized brightness of the character.
+     */
+    private static double valueOf(char[] charset, double[] normalized, char c) {
+        for (int i = 0; i < charset.length; i++) {
+            if (charset[i] == c) {
+                return normalized[i];
+            }
+        }
+        throw new IllegalArgumentException(String.valueOf(c));
+    }
+
+    /**
+     * Builds the characters of an inclusive range.
+     *
+     * @param first The first character.
+     * @param last  The last character.
+     * @return The characters of the range.
+     */
+    private static char[] range(int first, int last) {
+        char[] chars = new char[last - first + 1];
+        for (int c = first; c <= last; c++) {
+            chars[c - first] = (char) c;
+        }
+        return chars;
+    }
+}